@@ -0,0 +1,179 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Limit of the moves that are in flight at the same time on one storage root, adjusted to the latency of the storage. The latency of every move is
+ * measured; after each window of moves, the limit grows by one if the 99th percentile of the window stayed below the target, and is halved if it did
+ * not (additive increase, multiplicative decrease). The limit thus follows the storage as its load changes over the day, and the other users of the
+ * storage see at most the target latency.
+ *
+ * There is one limiter per storage root, shared by all runs of the plugin in this JVM, so that concurrent processes on the same export take their
+ * share of the same limit. Its target and highest limit follow the configuration of the latest run on the root.
+ *
+ * The limit applies to independent chains of moves. The moves inside of one chain depend on each other, each one frees the name the next one needs,
+ * so they always run one after another. A folder whose files all move up by one position, e.g. after a page was inserted at the front, is a single
+ * chain and therefore renamed serially whatever the limit is.
+ */
+@Log4j2
+public class AdaptiveLimiter {
+
+    /**
+     * a move on the storage
+     */
+    @FunctionalInterface
+    public interface Operation {
+        void run() throws IOException;
+    }
+
+    // number of moves after which the limit is adjusted
+    static final int WINDOW = 100;
+    private static final int INITIAL_LIMIT = 4;
+
+    private static final Map<String, AdaptiveLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private final String root;
+    private long targetNanos;
+    private int maxLimit;
+
+    private int limit;
+    private int inFlight;
+    private final long[] window = new long[WINDOW];
+    private int samples;
+
+    AdaptiveLimiter(String root, long targetMillis, int maxLimit) {
+        this.root = root;
+        this.targetNanos = targetMillis * 1_000_000L;
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.min(this.maxLimit, INITIAL_LIMIT);
+    }
+
+    /**
+     * get the limiter of a storage root. It is created when the root is used the first time, later calls apply the given settings to it, so that a
+     * changed configuration takes effect with the next run.
+     *
+     * @param root name of the storage root, e.g. the mount point of the export
+     * @param targetMillis target of the 99th percentile of the move latency
+     * @param maxLimit highest number of moves in flight
+     * @return the limiter of the root
+     */
+    public static AdaptiveLimiter forRoot(String root, long targetMillis, int maxLimit) {
+        AdaptiveLimiter limiter = LIMITERS.computeIfAbsent(root, key -> new AdaptiveLimiter(key, targetMillis, maxLimit));
+        limiter.configure(targetMillis, maxLimit);
+        return limiter;
+    }
+
+    /**
+     * change the target and the highest limit, a current limit above the new highest limit is lowered at once
+     *
+     * @param targetMillis target of the 99th percentile of the move latency
+     * @param maxLimit highest number of moves in flight
+     */
+    synchronized void configure(long targetMillis, int maxLimit) {
+        this.targetNanos = targetMillis * 1_000_000L;
+        this.maxLimit = Math.max(1, maxLimit);
+        if (limit > this.maxLimit) {
+            log.debug("Concurrency limit of {} lowered from {} to the configured maximum {}", root, limit, this.maxLimit);
+            limit = this.maxLimit;
+        }
+    }
+
+    /**
+     * @return the current limit of every storage root that was used so far
+     */
+    public static Map<String, Integer> getLimits() {
+        Map<String, Integer> limits = new TreeMap<>();
+        LIMITERS.forEach((root, limiter) -> limits.put(root, limiter.getLimit()));
+        return limits;
+    }
+
+    /**
+     * run a move as soon as the limit allows it, and measure its latency
+     *
+     * @param operation the move
+     * @throws IOException if the move failed, or the thread was interrupted while waiting
+     */
+    public void run(Operation operation) throws IOException {
+        acquire();
+        long start = System.nanoTime();
+        try {
+            operation.run();
+        } finally {
+            release(System.nanoTime() - start);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    private synchronized void acquire() throws IOException {
+        try {
+            while (inFlight >= limit) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the storage at " + root, e);
+        }
+        inFlight++;
+    }
+
+    private synchronized void release(long latencyNanos) {
+        inFlight--;
+        record(latencyNanos);
+        notifyAll();
+    }
+
+    /**
+     * add the latency of a move to the window, and adjust the limit when the window is full
+     */
+    synchronized void record(long latencyNanos) {
+        window[samples++] = latencyNanos;
+        if (samples == WINDOW) {
+            adjust();
+            samples = 0;
+        }
+    }
+
+    private void adjust() {
+        long[] sorted = window.clone();
+        Arrays.sort(sorted);
+        long p99 = sorted[(int) Math.ceil(0.99 * WINDOW) - 1];
+        int previous = limit;
+        if (p99 > targetNanos) {
+            limit = Math.max(1, limit / 2);
+        } else if (limit < maxLimit) {
+            limit++;
+        }
+        if (limit != previous) {
+            log.debug("Concurrency limit of {} changed from {} to {}, p99 latency {} ms", root, previous, limit, p99 / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.goobi.beans.Step;
+
+import de.sub.goobi.config.ConfigPlugins;
+import de.sub.goobi.config.ConfigurationHelper;
+
+/**
+ * The settings of the plugin, read once per project and step and shared by all executions. A block is matched and read again only when the
+ * configuration file has changed since, which costs one stat of the file per execution instead of reading and matching the whole file. Only the
+ * immutable {@link RenameSettings} are shared between the threads, never the configuration block itself.
+ */
+public final class ConfigCache {
+
+    private record Entry(Object value, FileState fileState) {
+    }
+
+    private record FileState(long lastModified, long size) {
+    }
+
+    // settings by plugin, project and step
+    private static final Map<String, Entry> CACHE = new ConcurrentHashMap<>();
+
+    private ConfigCache() {
+    }
+
+    /**
+     * get the settings of a plugin for a step
+     *
+     * @param title the title of the plugin, the configuration file is plugin_{title}.xml
+     * @param step the step
+     * @return the settings of the matching block
+     */
+    public static RenameSettings getSettings(String title, Step step) {
+        Path file = Path.of(ConfigurationHelper.getInstance().getConfigurationFolder(), "plugin_" + title + ".xml");
+        String projectTitle = step.getProzess() == null || step.getProzess().getProjekt() == null ? "" : step.getProzess().getProjekt().getTitel();
+        String key = title + '\n' + projectTitle + '\n' + step.getTitel();
+        return get(file, key, () -> RenameSettings.read(ConfigPlugins.getProjectAndStepConfig(title, step)));
+    }
+
+    /**
+     * get a cached value, which is read again if the file has changed since it was cached
+     *
+     * @param file the file the value is read from
+     * @param key the key of the value
+     * @param reader reads the value from the file
+     * @return the cached or newly read value
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T get(Path file, String key, Supplier<T> reader) {
+        FileState fileState = readFileState(file);
+        Entry entry = CACHE.get(key);
+        if (entry != null && entry.fileState().equals(fileState)) {
+            return (T) entry.value();
+        }
+        T value = reader.get();
+        CACHE.put(key, new Entry(value, fileState));
+        return value;
+    }
+
+    private static FileState readFileState(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new FileState(attributes.lastModifiedTime().toMillis(), attributes.size());
+        } catch (IOException e) {
+            return new FileState(0, -1);
+        }
+    }
+}
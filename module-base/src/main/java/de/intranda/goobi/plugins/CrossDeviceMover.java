@@ -0,0 +1,155 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32C;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Moves a file to another file system, where a rename is not possible. This happens when the temp folder of a folder is a mount point of its own,
+ * and then for every file that is parked there to break a rename cycle. The content is transferred channel to channel, which the JDK hands over to
+ * the kernel (copy_file_range or sendfile on Linux), into a hidden file next to the target. Only after the size and a CRC32C checksum of the copy
+ * were verified against the source and the data was forced to disk, the hidden file gets the target name and the source is deleted. A target
+ * therefore never exists with partial or corrupted content, and a failed or interrupted move leaves the source untouched.
+ */
+@Log4j2
+public final class CrossDeviceMover {
+
+    private static final String PART_SUFFIX = ".part";
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * computes the checksum of a file, to compare the copy with its source
+     */
+    @FunctionalInterface
+    interface Checksum {
+        long of(Path file) throws IOException;
+    }
+
+    private CrossDeviceMover() {
+    }
+
+    /**
+     * @param folder a folder
+     * @param other another folder
+     * @return true if the two folders are on different file systems, so that a move between them is a copy
+     * @throws IOException if a folder cannot be read
+     */
+    public static boolean crossesFileStores(Path folder, Path other) throws IOException {
+        return !Files.getFileStore(folder).equals(Files.getFileStore(other));
+    }
+
+    /**
+     * move a file to another file system
+     *
+     * @param source the file to move
+     * @param target the new path of the file, which must not exist yet
+     * @return the number of bytes transferred
+     * @throws IOException if the file could not be copied completely, the source is kept then
+     */
+    public static long move(Path source, Path target) throws IOException {
+        return move(source, target, CrossDeviceMover::checksum);
+    }
+
+    /**
+     * move a file to another file system, comparing the copy with the given checksum
+     *
+     * @param source the file to move
+     * @param target the new path of the file, which must not exist yet
+     * @param checksum computes the checksums of the source and the copy
+     * @return the number of bytes transferred
+     * @throws IOException if the file could not be copied completely, the source is kept then
+     */
+    static long move(Path source, Path target, Checksum checksum) throws IOException {
+        if (Files.exists(target)) {
+            throw new FileSystemException(source.toString(), target.toString(), "target already exists");
+        }
+        Path part = target.resolveSibling("." + target.getFileName() + PART_SUFFIX);
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        long size = attributes.size();
+        try {
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                    FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                            StandardOpenOption.WRITE)) {
+                long position = 0;
+                while (position < size) {
+                    long transferred = in.transferTo(position, size - position, out);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
+                }
+                if (position != size || out.size() != size) {
+                    throw new IOException("Copy of " + source + " to " + target + " is incomplete: " + out.size() + " of " + size + " bytes");
+                }
+                out.force(true);
+            }
+            if (checksum.of(source) != checksum.of(part)) {
+                throw new IOException("Copy of " + source + " to " + target + " does not match the source");
+            }
+            Files.setLastModifiedTime(part, attributes.lastModifiedTime());
+            copyPermissions(source, part);
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        Files.delete(source);
+        log.trace("Moved {} to {} across file systems, {} bytes", source, target, size);
+        return size;
+    }
+
+    /**
+     * @param file the file to read
+     * @return the CRC32C checksum of the content of the file
+     * @throws IOException if the file cannot be read
+     */
+    static long checksum(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void copyPermissions(Path source, Path target) throws IOException {
+        try {
+            Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source));
+        } catch (UnsupportedOperationException e) { // NOSONAR
+            // not a POSIX file system, the default permissions of the target are kept
+        }
+    }
+}
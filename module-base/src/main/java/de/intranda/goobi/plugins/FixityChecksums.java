@@ -0,0 +1,319 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Fixity checksums of all files of a process, computed while the folders are renamed so that the ingest does not have to read the files again.
+ *
+ * Every renamed folder is handed over as soon as it is done, its files are read in parallel with large buffers on a pool of their own, while the
+ * next folder is already renamed. Only if the caller opts in, a checksum that is already in the METS file is reused instead, if it has the same
+ * type, the METS file records the size of the file and it matches, and the file was not modified after the METS file. Neither proves that the
+ * content is unchanged, so by default every file is read. The checksums are written to a manifest with one line per file, like md5sum does,
+ * under the new names.
+ */
+@Log4j2
+public class FixityChecksums implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final QName FILE = new QName(MetsLocationRewriter.METS_NAMESPACE, "file");
+    private static final QName FLOCAT = new QName(MetsLocationRewriter.METS_NAMESPACE, "FLocat");
+
+    // name of the algorithm, as used by MessageDigest and in the CHECKSUMTYPE of METS, e.g. MD5 or SHA-256
+    private final String algorithm;
+    // true if the checksums of the METS file may be reused for files whose size and modification time did not change
+    private final boolean reuseMetsChecksums;
+    private final ExecutorService executor;
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+    private final ThreadLocal<MessageDigest> digests;
+
+    // checksums in the METS file by path of the file under its new name
+    private final Map<Path, MetsChecksum> metsChecksums = new ConcurrentHashMap<>();
+    private long metsModified;
+    // checksums of all files by path, sorted for the manifest
+    private final Map<Path, String> checksums = new ConcurrentSkipListMap<>();
+    private final List<Future<?>> futures = new ArrayList<>();
+
+    private final AtomicInteger reused = new AtomicInteger();
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    /**
+     * @param algorithm name of the algorithm, e.g. MD5 or SHA-256
+     * @param threads number of files that are read at the same time
+     * @throws IllegalArgumentException if the algorithm is not known
+     */
+    public FixityChecksums(String algorithm, int threads) {
+        this(algorithm, threads, false);
+    }
+
+    /**
+     * @param algorithm name of the algorithm, e.g. MD5 or SHA-256
+     * @param threads number of files that are read at the same time
+     * @param reuseMetsChecksums true if the checksums of the METS file may be reused for files with the recorded size that were not modified
+     *            after the METS file
+     * @throws IllegalArgumentException if the algorithm is not known
+     */
+    public FixityChecksums(String algorithm, int threads, boolean reuseMetsChecksums) {
+        try {
+            MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown checksum algorithm " + algorithm, e);
+        }
+        this.algorithm = algorithm;
+        this.reuseMetsChecksums = reuseMetsChecksums;
+        this.digests = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        this.executor = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * read the checksums that are already in the METS file, before the file locations are updated
+     *
+     * @param metsFile the METS file
+     * @param newLocations function returning the new location of a file for the location in the METS file
+     * @throws IOException
+     */
+    public void readMets(Path metsFile, UnaryOperator<String> newLocations) throws IOException {
+        metsModified = Files.getLastModifiedTime(metsFile).toMillis();
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try (InputStream in = Files.newInputStream(metsFile)) {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+            try {
+                String checksum = null;
+                String checksumType = null;
+                long size = -1;
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    if (FILE.equals(reader.getName())) {
+                        checksum = reader.getAttributeValue(null, "CHECKSUM");
+                        checksumType = reader.getAttributeValue(null, "CHECKSUMTYPE");
+                        String sizeValue = reader.getAttributeValue(null, "SIZE");
+                        size = sizeValue == null ? -1 : Long.parseLong(sizeValue);
+                    } else if (FLOCAT.equals(reader.getName()) && checksum != null && algorithm.equalsIgnoreCase(checksumType)) {
+                        Path file = toPath(newLocations.apply(reader.getAttributeValue(MetsLocationRewriter.XLINK_NAMESPACE, "href")));
+                        if (file != null) {
+                            metsChecksums.put(file, new MetsChecksum(checksum, size));
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new IOException("Error reading the checksums of " + metsFile + ": " + e.getMessage(), e);
+        }
+        log.debug("{} {} checksums found in {}", metsChecksums.size(), algorithm, metsFile);
+    }
+
+    /**
+     * start computing the checksums of all files in a folder, without waiting for them. Hidden files and subfolders are skipped.
+     *
+     * @param folder the folder, with the new names of its files
+     * @throws IOException if the folder cannot be listed
+     */
+    public void submitFolder(Path folder) throws IOException {
+        List<Future<?>> folderFutures = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().startsWith(".")) {
+                    continue;
+                }
+                folderFutures.add(executor.submit(() -> {
+                    checksum(file);
+                    return null;
+                }));
+            }
+        }
+        synchronized (futures) {
+            futures.addAll(folderFutures);
+        }
+    }
+
+    /**
+     * wait until the checksums of all submitted folders are computed
+     *
+     * @throws IOException if any file could not be read
+     */
+    public void await() throws IOException {
+        List<Future<?>> pending;
+        synchronized (futures) {
+            pending = new ArrayList<>(futures);
+            futures.clear();
+        }
+        IOException error = null;
+        for (Future<?> future : pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while computing checksums", e);
+            } catch (ExecutionException e) {
+                IOException cause = e.getCause() instanceof IOException ioe ? ioe : new IOException(e.getCause());
+                if (error == null) {
+                    error = cause;
+                } else {
+                    error.addSuppressed(cause);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        log.debug("{} checksums computed, {} reused from METS, {} bytes read", checksums.size() - reused.get(), reused.get(), bytesRead.get());
+    }
+
+    /**
+     * write the manifest, one line with checksum and path relative to the base folder per file
+     *
+     * @param manifest the manifest file, replaced atomically
+     * @param baseFolder the folder the paths are relative to, usually the process folder
+     * @throws IOException
+     */
+    public void writeManifest(Path manifest, Path baseFolder) throws IOException {
+        Path tempFile = manifest.resolveSibling("." + manifest.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            for (Map.Entry<Path, String> entry : checksums.entrySet()) {
+                String path = baseFolder.relativize(entry.getKey()).toString().replace('\\', '/');
+                writer.write(entry.getValue() + "  " + path);
+                writer.newLine();
+            }
+        }
+        Files.move(tempFile, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param location a file location as in the METS file, under the new name
+     * @return the checksum of the file, or null if it was not computed
+     */
+    public String getChecksum(String location) {
+        Path file = toPath(location);
+        return file == null ? null : checksums.get(file);
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getReused() {
+        return reused.get();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void checksum(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            return;
+        }
+        Path key = file.toAbsolutePath().normalize();
+        MetsChecksum metsChecksum = reuseMetsChecksums ? metsChecksums.get(key) : null;
+        // without a recorded size the modification time alone is too weak, e.g. for files copied with their times
+        if (metsChecksum != null && metsChecksum.size() >= 0 && metsChecksum.size() == attributes.size()
+                && attributes.lastModifiedTime().toMillis() <= metsModified) {
+            checksums.put(key, metsChecksum.checksum().toLowerCase());
+            reused.incrementAndGet();
+            return;
+        }
+        MessageDigest digest = digests.get();
+        digest.reset();
+        ByteBuffer buffer = buffers.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                bytesRead.addAndGet(buffer.remaining());
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        checksums.put(key, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * @return the path of a location that is a file URI or an absolute path, null for any other location
+     */
+    private static Path toPath(String location) {
+        if (location == null) {
+            return null;
+        }
+        try {
+            Path path = location.startsWith("file:") ? Path.of(URI.create(location)) : Path.of(location);
+            return path.isAbsolute() ? path.normalize() : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private record MetsChecksum(String checksum, long size) {
+    }
+}
@@ -0,0 +1,196 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import lombok.Getter;
+
+/**
+ * The names of all files of a folder, read with one directory listing. Instead of asking the storage whether a name is taken, the snapshot is
+ * consulted and kept up to date while files are moved.
+ */
+public class FolderSnapshot {
+
+    @Getter
+    private final Path folder;
+    // names of all files in the folder at the time of the listing, sorted
+    @Getter
+    private final List<String> fileNames;
+    // true if the folder contains the subfolder that is used to break rename cycles
+    @Getter
+    private final boolean tempFolderPresent;
+    // names of the files in the temp folder, left there by a run that was interrupted without a rename journal
+    @Getter
+    private final List<String> tempFolderFiles;
+
+    private final Set<String> currentNames;
+
+    private FolderSnapshot(Path folder, List<String> fileNames, boolean tempFolderPresent, List<String> tempFolderFiles) {
+        this.folder = folder;
+        Collections.sort(fileNames);
+        this.fileNames = Collections.unmodifiableList(fileNames);
+        this.tempFolderPresent = tempFolderPresent;
+        this.tempFolderFiles = List.copyOf(tempFolderFiles);
+        this.currentNames = new HashSet<>(fileNames);
+    }
+
+    /**
+     * list the folder with a single streamed directory read. Hidden files are skipped, the temp folder is only noted, and subfolders and symbolic
+     * links to folders are left out, no matter whether their names contain a dot.
+     *
+     * @param folder the folder to list
+     * @param tempFolder name of the subfolder that is used to break rename cycles
+     * @return the snapshot of the folder
+     * @throws IOException if the folder cannot be read
+     */
+    public static FolderSnapshot read(Path folder, String tempFolder) throws IOException {
+        List<String> fileNames = new ArrayList<>();
+        boolean tempFolderPresent = false;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path entry : stream) {
+                String name = entry.getFileName().toString();
+                if (name.startsWith(".")) {
+                    continue;
+                }
+                if (name.equals(tempFolder)) {
+                    tempFolderPresent = true;
+                } else if (!Files.isDirectory(entry)) {
+                    fileNames.add(name);
+                }
+            }
+        }
+        return new FolderSnapshot(folder, fileNames, tempFolderPresent, tempFolderPresent ? listTempFolder(folder.resolve(tempFolder)) : List.of());
+    }
+
+    /**
+     * list the folder with a single streamed directory read like {@link #read(Path, String)}, but look at every entry and hand the subfolders to the
+     * given consumer instead of taking them for files. Symbolic links to folders are left out, so that a walk never leaves the tree and a link is
+     * never renamed like a file.
+     *
+     * @param folder the folder to list
+     * @param tempFolder name of the subfolder that is used to break rename cycles
+     * @param subfolders receives the subfolders of the folder, apart from the temp folder and hidden ones
+     * @return the snapshot of the folder
+     * @throws IOException if the folder cannot be read
+     */
+    public static FolderSnapshot read(Path folder, String tempFolder, Consumer<Path> subfolders) throws IOException {
+        List<String> fileNames = new ArrayList<>();
+        boolean tempFolderPresent = false;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path entry : stream) {
+                String name = entry.getFileName().toString();
+                if (name.startsWith(".")) {
+                    continue;
+                }
+                if (name.equals(tempFolder)) {
+                    tempFolderPresent = true;
+                } else if (Files.isDirectory(entry)) {
+                    if (!Files.isSymbolicLink(entry)) {
+                        subfolders.accept(entry);
+                    }
+                } else {
+                    fileNames.add(name);
+                }
+            }
+        }
+        return new FolderSnapshot(folder, fileNames, tempFolderPresent, tempFolderPresent ? listTempFolder(folder.resolve(tempFolder)) : List.of());
+    }
+
+    private static List<String> listTempFolder(Path tempFolder) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(tempFolder)) {
+            for (Path entry : stream) {
+                String name = entry.getFileName().toString();
+                if (!name.startsWith(".")) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * create a snapshot from a listing that was already made, e.g. by the StorageProvider on storage that is not a local file system
+     *
+     * @param folder the listed folder
+     * @param files the files of the folder
+     * @param tempFolder name of the subfolder that is used to break rename cycles
+     * @return the snapshot of the folder
+     */
+    public static FolderSnapshot of(Path folder, List<Path> files, String tempFolder) {
+        return of(folder, files, tempFolder, List.of());
+    }
+
+    /**
+     * create a snapshot from listings that were already made, e.g. by the StorageProvider on storage that is not a local file system
+     *
+     * @param folder the listed folder
+     * @param files the files of the folder
+     * @param tempFolder name of the subfolder that is used to break rename cycles
+     * @param tempFiles the files of the temp folder, if it is there
+     * @return the snapshot of the folder
+     */
+    public static FolderSnapshot of(Path folder, List<Path> files, String tempFolder, List<Path> tempFiles) {
+        List<String> fileNames = new ArrayList<>(files.size());
+        boolean tempFolderPresent = false;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.equals(tempFolder)) {
+                tempFolderPresent = true;
+            } else {
+                fileNames.add(name);
+            }
+        }
+        List<String> tempFolderFiles = new ArrayList<>(tempFiles.size());
+        for (Path file : tempFiles) {
+            tempFolderFiles.add(file.getFileName().toString());
+        }
+        return new FolderSnapshot(folder, fileNames, tempFolderPresent, tempFolderFiles);
+    }
+
+    /**
+     * @param name a file name relative to the folder
+     * @return true if a file of this name is currently in the folder
+     */
+    public synchronized boolean contains(String name) {
+        return currentNames.contains(name);
+    }
+
+    /**
+     * record a move that was just executed inside of the folder
+     *
+     * @param source old name relative to the folder
+     * @param target new name relative to the folder
+     */
+    public synchronized void moved(String source, String target) {
+        currentNames.remove(source);
+        currentNames.add(target);
+    }
+}
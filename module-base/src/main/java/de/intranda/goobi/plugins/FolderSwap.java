@@ -0,0 +1,228 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Renames all files of a folder at once on a local POSIX file system. Every file is hard linked under its new name into an empty staging folder next
+ * to the folder, which then takes the place of the folder with two atomic directory renames. As the staging folder starts empty, no name can collide
+ * with a file that was not moved yet, and other steps never see a folder in which only some of the files have their new names.
+ *
+ * Both helper folders are hidden siblings of the folder. The old folder is only removed after the swap was recorded, so that an interrupted swap can
+ * always be completed or undone:
+ *
+ * <pre>
+ * folder   .folder.old   .folder.staging
+ * yes      no            maybe            swap not started, the staging folder may be incomplete
+ * no       yes           yes              interrupted between the two renames
+ * yes      yes           no               swapped, the old folder is not removed yet
+ * </pre>
+ */
+@Log4j2
+public class FolderSwap {
+
+    private static final String STAGING_SUFFIX = ".staging";
+    private static final String OLD_SUFFIX = ".old";
+
+    @Getter
+    private final Path folder;
+    private final Path stagingFolder;
+    private final Path oldFolder;
+
+    public FolderSwap(Path folder) {
+        this.folder = folder;
+        String name = folder.getFileName().toString();
+        this.stagingFolder = folder.resolveSibling("." + name + STAGING_SUFFIX);
+        this.oldFolder = folder.resolveSibling("." + name + OLD_SUFFIX);
+    }
+
+    /**
+     * list all entries of a folder, including hidden ones
+     *
+     * @param folder the folder to list
+     * @return the names of all entries, or null if the folder contains anything else than regular files or is a mount point, so that it cannot be
+     *         swapped
+     * @throws IOException if the folder cannot be read
+     */
+    public static List<String> listSwappableFiles(Path folder) throws IOException {
+        if (!Files.getFileStore(folder).equals(Files.getFileStore(folder.toAbsolutePath().getParent()))) {
+            return null;
+        }
+        List<String> fileNames = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path entry : stream) {
+                // subfolders and symbolic links cannot be hard linked
+                if (!Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isRegularFile()) {
+                    return null;
+                }
+                fileNames.add(entry.getFileName().toString());
+            }
+        }
+        return fileNames;
+    }
+
+    /**
+     * build the staging folder with a hard link for every file under its new name. A staging folder of an earlier attempt is removed first.
+     *
+     * @param fileNames names of all files of the folder
+     * @param newNames function returning the new name of a file, or the unchanged name if the file should keep it
+     * @return the number of files that got a new name
+     * @throws IOException if two files would get the same name or a link cannot be created, the staging folder is removed again then
+     */
+    public int stage(List<String> fileNames, UnaryOperator<String> newNames) throws IOException {
+        discard();
+        Files.createDirectory(stagingFolder);
+        copyPermissions();
+        int filesRenamed = 0;
+        try {
+            for (String fileName : fileNames) {
+                String newName = newNames.apply(fileName);
+                try {
+                    Files.createLink(stagingFolder.resolve(newName), folder.resolve(fileName));
+                } catch (FileAlreadyExistsException e) {
+                    throw new IOException("Cannot rename " + fileName + " in " + folder + ", another file would be named " + newName, e);
+                }
+                if (!newName.equals(fileName)) {
+                    filesRenamed++;
+                }
+            }
+        } catch (IOException e) {
+            discard();
+            throw e;
+        }
+        syncDirectory(stagingFolder);
+        return filesRenamed;
+    }
+
+    /**
+     * replace the folder with the staging folder
+     *
+     * @throws IOException
+     */
+    public void swap() throws IOException {
+        Files.move(folder, oldFolder, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(stagingFolder, folder, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(folder.toAbsolutePath().getParent());
+    }
+
+    /**
+     * @return true if the first rename of the swap has happened and the old folder was not removed yet
+     */
+    public boolean isSwapped() {
+        return Files.exists(oldFolder);
+    }
+
+    /**
+     * finish a swap that was interrupted between the two renames
+     *
+     * @throws IOException
+     */
+    public void completeSwap() throws IOException {
+        if (!Files.exists(folder)) {
+            Files.move(stagingFolder, folder, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * bring the old folder back, no matter whether the swap was interrupted between the two renames or only the old folder was not removed yet
+     *
+     * @throws IOException
+     */
+    public void undoSwap() throws IOException {
+        if (Files.exists(folder)) {
+            discard();
+            Files.move(folder, stagingFolder, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(oldFolder, folder, StandardCopyOption.ATOMIC_MOVE);
+        discard();
+    }
+
+    /**
+     * remove the old folder after the swap. Only links are removed, the files themselves live on under their new names.
+     *
+     * @throws IOException
+     */
+    public void cleanUp() throws IOException {
+        deleteFolder(oldFolder);
+    }
+
+    /**
+     * remove the staging folder of a swap that did not happen
+     *
+     * @throws IOException
+     */
+    public void discard() throws IOException {
+        deleteFolder(stagingFolder);
+    }
+
+    private void copyPermissions() {
+        PosixFileAttributeView view = Files.getFileAttributeView(stagingFolder, PosixFileAttributeView.class);
+        if (view == null) {
+            return;
+        }
+        try {
+            PosixFileAttributes attributes = Files.readAttributes(folder, PosixFileAttributes.class);
+            view.setPermissions(attributes.permissions());
+            view.setGroup(attributes.group());
+        } catch (IOException e) {
+            log.debug("Cannot copy the permissions of {} to {}: {}", folder, stagingFolder, e.toString());
+        }
+    }
+
+    private static void deleteFolder(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                Files.delete(entry);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not every platform allows to sync a directory, the rename journal still knows what happened
+            log.debug("Cannot sync directory {}: {}", directory, e.toString());
+        }
+    }
+}
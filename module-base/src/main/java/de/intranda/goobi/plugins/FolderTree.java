@@ -0,0 +1,126 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Walks the subfolders of a folder at any depth, for the recursive mode. Every subfolder is listed once and handed to the action, and its listing is
+ * dropped before the subfolders below it are visited. Only the listings of the folders that are being worked on are kept in memory, however many
+ * files the whole tree contains. Subtrees are walked at the same time by a fork-join pool. Hidden folders and temp folders are skipped, and
+ * symbolic links are not followed.
+ */
+public final class FolderTree {
+
+    /**
+     * work on the listing of one subfolder, called by several threads at the same time
+     */
+    @FunctionalInterface
+    public interface FolderAction {
+        void accept(FolderSnapshot snapshot) throws IOException;
+    }
+
+    private FolderTree() {
+    }
+
+    /**
+     * visit all subfolders of a folder, but not the folder itself
+     *
+     * @param folder the folder to walk
+     * @param tempFolder name of the subfolder that is used to break rename cycles, it is not visited
+     * @param parallelism number of threads that walk the subtrees
+     * @param action called with the listing of every subfolder
+     * @throws IOException if a folder could not be listed or the action failed, the walk is stopped then
+     */
+    public static void walkSubfolders(Path folder, String tempFolder, int parallelism, FolderAction action) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            pool.invoke(new FolderTask(folder, tempFolder, action, false));
+        } catch (RuntimeException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof UncheckedIOException unchecked) {
+                    throw unchecked.getCause();
+                }
+            }
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static final class FolderTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path folder;
+        private final String tempFolder;
+        private final transient FolderAction action;
+        // false for the folder the walk starts at, it is only looked at for its subfolders
+        private final boolean visit;
+
+        private FolderTask(Path folder, String tempFolder, FolderAction action, boolean visit) {
+            this.folder = folder;
+            this.tempFolder = tempFolder;
+            this.action = action;
+            this.visit = visit;
+        }
+
+        @Override
+        protected void compute() {
+            List<Path> subfolders = new ArrayList<>();
+            try {
+                if (visit) {
+                    action.accept(FolderSnapshot.read(folder, tempFolder, subfolders::add));
+                } else {
+                    listSubfolders(subfolders);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            List<FolderTask> tasks = new ArrayList<>(subfolders.size());
+            for (Path subfolder : subfolders) {
+                tasks.add(new FolderTask(subfolder, tempFolder, action, true));
+            }
+            invokeAll(tasks);
+        }
+
+        private void listSubfolders(List<Path> subfolders) throws IOException {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder,
+                    entry -> Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS))) {
+                for (Path entry : stream) {
+                    String name = entry.getFileName().toString();
+                    if (!name.startsWith(".") && !name.equals(tempFolder)) {
+                        subfolders.add(entry);
+                    }
+                }
+            }
+        }
+    }
+}
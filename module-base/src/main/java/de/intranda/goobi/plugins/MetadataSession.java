@@ -0,0 +1,112 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.goobi.beans.Process;
+
+import de.sub.goobi.helper.exceptions.SwapException;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import ugh.dl.Fileformat;
+import ugh.exceptions.PreferencesException;
+import ugh.exceptions.ReadException;
+import ugh.exceptions.WriteException;
+
+/**
+ * The metadata file of a process, read once per execution of the plugin and shared by everything that needs it. Before the parsed document is
+ * handed out again, the file is checked for changes on disk, e.g. by another step or by the streaming METS update, and read again if necessary.
+ */
+@Log4j2
+public class MetadataSession {
+
+    private final Process process;
+
+    private Fileformat fileformat;
+    // state of meta.xml when it was read or written the last time
+    private FileState fileState;
+    // time spent parsing and writing meta.xml, and the bytes that were read and written
+    @Getter
+    private long parseMillis;
+    @Getter
+    private long writeMillis;
+    @Getter
+    private long bytesTouched;
+
+    public MetadataSession(Process process) {
+        this.process = process;
+    }
+
+    /**
+     * get the parsed metadata file, reading it only if it was not read before or has changed since then
+     *
+     * @return the Fileformat of the process
+     * @throws ReadException
+     * @throws IOException
+     * @throws SwapException
+     * @throws PreferencesException
+     */
+    public synchronized Fileformat getFileformat() throws ReadException, IOException, SwapException, PreferencesException {
+        FileState current = readFileState();
+        if (fileformat == null || !current.equals(fileState)) {
+            if (fileformat != null) {
+                log.debug("meta.xml of process {} changed on disk, reading it again", process.getTitel());
+            }
+            long start = System.currentTimeMillis();
+            fileformat = process.readMetadataFile();
+            parseMillis += System.currentTimeMillis() - start;
+            bytesTouched += Math.max(0, current.size());
+            fileState = current;
+        }
+        return fileformat;
+    }
+
+    /**
+     * write the shared Fileformat back to the metadata file
+     *
+     * @throws WriteException
+     * @throws PreferencesException
+     * @throws IOException
+     * @throws SwapException
+     */
+    public synchronized void write() throws WriteException, PreferencesException, IOException, SwapException {
+        long start = System.currentTimeMillis();
+        process.writeMetadataFile(fileformat);
+        writeMillis += System.currentTimeMillis() - start;
+        fileState = readFileState();
+        bytesTouched += Math.max(0, fileState.size());
+    }
+
+    private FileState readFileState() throws IOException, SwapException {
+        Path metsFile = Path.of(process.getMetadataFilePath());
+        if (!Files.exists(metsFile)) {
+            return new FileState(0, -1);
+        }
+        BasicFileAttributes attributes = Files.readAttributes(metsFile, BasicFileAttributes.class);
+        return new FileState(attributes.lastModifiedTime().toMillis(), attributes.size());
+    }
+
+    private record FileState(long lastModified, long size) {
+    }
+}
@@ -0,0 +1,235 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Rewrites the file locations of a METS file without building the document in memory. The file is streamed event by event, only the xlink:href of
+ * mets:FLocat elements is changed and everything else is copied as it is. Optionally, the CHECKSUM and CHECKSUMTYPE of the enclosing mets:file are
+ * set as well. The result is written next to the original and moved over it in one step. Before, the original is kept as numbered backup like
+ * Goobi does when it writes a metadata file: meta.xml.1 is the latest version, the older ones move up by one and the oldest beyond the configured
+ * number of backups is removed.
+ */
+@Log4j2
+public class MetsLocationRewriter {
+
+    public static final String METS_NAMESPACE = "http://www.loc.gov/METS/";
+    public static final String XLINK_NAMESPACE = "http://www.w3.org/1999/xlink";
+
+    private static final QName FILE = new QName(METS_NAMESPACE, "file");
+    private static final QName FLOCAT = new QName(METS_NAMESPACE, "FLocat");
+    private static final QName CHECKSUM = new QName("CHECKSUM");
+    private static final QName CHECKSUMTYPE = new QName("CHECKSUMTYPE");
+    private static final QName HREF = new QName(XLINK_NAMESPACE, "href");
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final XMLInputFactory inputFactory;
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    private final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+    // number of numbered backups of the METS file that are kept, 0 for none
+    private final int numberOfBackups;
+
+    /**
+     * create a rewriter that keeps one backup of the METS file
+     */
+    public MetsLocationRewriter() {
+        this(1);
+    }
+
+    /**
+     * @param numberOfBackups number of numbered backups of the METS file that are kept, e.g. getNumberOfMetaBackups() of the Goobi configuration
+     */
+    public MetsLocationRewriter(int numberOfBackups) {
+        this.numberOfBackups = Math.max(0, numberOfBackups);
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * rewrite all file locations of a METS file
+     *
+     * @param metsFile the METS file
+     * @param newLocations function returning the new location for an old one, or the old location if it should be kept
+     * @return the number of changed locations, the file is left untouched if this is 0
+     * @throws IOException if the file cannot be read, parsed or replaced
+     */
+    public int rewrite(Path metsFile, UnaryOperator<String> newLocations) throws IOException {
+        return rewrite(metsFile, newLocations, null, null);
+    }
+
+    /**
+     * rewrite all file locations of a METS file and set the checksums of the files
+     *
+     * @param metsFile the METS file
+     * @param newLocations function returning the new location for an old one, or the old location if it should be kept
+     * @param checksums function returning the checksum for a new location, or null to keep the checksum of the file as it is
+     * @param checksumType the CHECKSUMTYPE of the checksums, e.g. MD5
+     * @return the number of changed locations and checksums, the file is left untouched if this is 0
+     * @throws IOException if the file cannot be read, parsed or replaced
+     */
+    public int rewrite(Path metsFile, UnaryOperator<String> newLocations, Function<String, String> checksums, String checksumType)
+            throws IOException {
+        Path tempFile = metsFile.resolveSibling(metsFile.getFileName() + TEMP_SUFFIX);
+        int changed;
+        try (InputStream in = Files.newInputStream(metsFile); OutputStream out = Files.newOutputStream(tempFile)) {
+            changed = copy(in, out, newLocations, checksums, checksumType);
+        } catch (XMLStreamException e) {
+            Files.deleteIfExists(tempFile);
+            throw new IOException("Error rewriting the file locations of " + metsFile + ": " + e.getMessage(), e);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+
+        if (changed == 0) {
+            Files.delete(tempFile);
+            return 0;
+        }
+        createBackup(metsFile);
+        Files.move(tempFile, metsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.debug("Rewrote {} file locations and checksums in {}", changed, metsFile);
+        return changed;
+    }
+
+    /**
+     * keep the current METS file as meta.xml.1 and move the older backups up by one, the oldest beyond the number of backups is removed
+     *
+     * @param metsFile the METS file
+     * @throws IOException if a backup cannot be moved or written
+     */
+    private void createBackup(Path metsFile) throws IOException {
+        if (numberOfBackups == 0) {
+            return;
+        }
+        String fileName = metsFile.getFileName().toString();
+        Files.deleteIfExists(metsFile.resolveSibling(fileName + "." + numberOfBackups));
+        for (int i = numberOfBackups - 1; i > 0; --i) {
+            Path backup = metsFile.resolveSibling(fileName + "." + i);
+            if (Files.exists(backup)) {
+                Files.move(backup, metsFile.resolveSibling(fileName + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.copy(metsFile, metsFile.resolveSibling(fileName + ".1"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private int copy(InputStream in, OutputStream out, UnaryOperator<String> newLocations, Function<String, String> checksums, String checksumType)
+            throws XMLStreamException {
+        XMLEventReader reader = inputFactory.createXMLEventReader(in);
+        XMLEventWriter writer = outputFactory.createXMLEventWriter(out, "UTF-8");
+        int changed = 0;
+        // the mets:file that gets a checksum is held back with everything after it, until its mets:FLocat tells which file it is
+        StartElement pendingFile = null;
+        List<XMLEvent> pendingEvents = new ArrayList<>();
+        try {
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (checksums != null && event.isStartElement() && FILE.equals(event.asStartElement().getName())) {
+                    pendingFile = event.asStartElement();
+                    continue;
+                }
+                if (event.isStartElement() && FLOCAT.equals(event.asStartElement().getName())) {
+                    StartElement element = event.asStartElement();
+                    Attribute href = element.getAttributeByName(HREF);
+                    if (href != null) {
+                        String newLocation = newLocations.apply(href.getValue());
+                        if (!newLocation.equals(href.getValue())) {
+                            event = replaceAttribute(element, HREF, newLocation);
+                            changed++;
+                        }
+                        if (pendingFile != null) {
+                            String checksum = checksums.apply(newLocation);
+                            Attribute current = pendingFile.getAttributeByName(CHECKSUM);
+                            if (checksum != null && (current == null || !checksum.equalsIgnoreCase(current.getValue()))) {
+                                pendingFile = replaceAttribute(replaceAttribute(pendingFile, CHECKSUM, checksum), CHECKSUMTYPE, checksumType);
+                                changed++;
+                            }
+                        }
+                    }
+                }
+                if (pendingFile != null) {
+                    pendingEvents.add(event);
+                    if (event.isStartElement() || event.isEndElement()) {
+                        writer.add(pendingFile);
+                        for (XMLEvent pendingEvent : pendingEvents) {
+                            writer.add(pendingEvent);
+                        }
+                        pendingFile = null;
+                        pendingEvents.clear();
+                    }
+                    continue;
+                }
+                writer.add(event);
+            }
+            writer.flush();
+        } finally {
+            reader.close();
+            writer.close();
+        }
+        return changed;
+    }
+
+    /**
+     * replace the value of an attribute, or add the attribute if the element does not have it
+     */
+    private StartElement replaceAttribute(StartElement element, QName name, String value) {
+        List<Attribute> attributes = new ArrayList<>();
+        boolean found = false;
+        for (Iterator<Attribute> it = element.getAttributes(); it.hasNext();) {
+            Attribute attribute = it.next();
+            if (name.equals(attribute.getName())) {
+                attributes.add(eventFactory.createAttribute(attribute.getName(), value));
+                found = true;
+            } else {
+                attributes.add(attribute);
+            }
+        }
+        if (!found) {
+            attributes.add(eventFactory.createAttribute(name, value));
+        }
+        QName elementName = element.getName();
+        return eventFactory.createStartElement(elementName.getPrefix(), elementName.getNamespaceURI(), elementName.getLocalPart(),
+                attributes.iterator(), element.getNamespaces(), element.getNamespaceContext());
+    }
+}
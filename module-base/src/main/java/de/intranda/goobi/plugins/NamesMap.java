@@ -0,0 +1,324 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import lombok.Getter;
+
+/**
+ * Mapping from the old names of the files, without their suffixes, to their new names.
+ *
+ * Only the old names are kept, sorted, together with the number of every file. New names are rendered when they are asked for, into a buffer of the
+ * calling thread, and old names are looked up inside of the given file name or location without cutting it into pieces. The memory needed depends
+ * on the number of distinct names only, no matter how many folders and METS entries are renamed with them. A mapping recovered from the rename
+ * journal has explicit new names instead.
+ *
+ * Folders can add a suffix to the new names of their files. A mapping for a single folder is taken with {@link #forFolder(String)}; for a location,
+ * e.g. in the METS file, the folder is the part before the file name.
+ */
+public class NamesMap {
+
+    /**
+     * appends the new name of the file with the given number to a buffer
+     */
+    @FunctionalInterface
+    public interface NameRenderer {
+        void render(int number, StringBuilder target);
+    }
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(StringBuilder::new);
+
+    // old names, sorted
+    private final String[] stems;
+    // number of the file with the old name at the same position, starting with 1, only used with a renderer
+    private final int[] numbers;
+    private final NameRenderer renderer;
+    // new name of the old name at the same position, only used without a renderer
+    private final String[] newNames;
+    // suffix of the new names by folder name
+    @Getter
+    private final Map<String, String> folderSuffixes;
+    // suffix of the folder this mapping was taken for, null if the folder is taken from each location
+    private final String suffix;
+    // true for an inverse mapping, which removes the folder suffixes instead of adding them
+    private final boolean removeSuffix;
+
+    private NamesMap(String[] stems, int[] numbers, NameRenderer renderer, String[] newNames, Map<String, String> folderSuffixes, String suffix,
+            boolean removeSuffix) {
+        this.stems = stems;
+        this.numbers = numbers;
+        this.renderer = renderer;
+        this.newNames = newNames;
+        this.folderSuffixes = folderSuffixes;
+        this.suffix = suffix;
+        this.removeSuffix = removeSuffix;
+    }
+
+    /**
+     * number the given files in their order. If several files have the same name without their suffixes, the last one counts.
+     *
+     * @param fileNames names of the files in the order in which they should be numbered
+     * @param renderer creates the new name from the number of a file
+     * @return the mapping
+     */
+    public static NamesMap create(List<String> fileNames, NameRenderer renderer) {
+        int[] numbers = new int[fileNames.size()];
+        for (int i = 0; i < numbers.length; ++i) {
+            numbers[i] = i + 1;
+        }
+        return create(fileNames, numbers, renderer);
+    }
+
+    /**
+     * number the given files with the given numbers. If several files have the same name without their suffixes, the last one counts.
+     *
+     * @param fileNames names of the files
+     * @param fileNumbers number of the file at the same position
+     * @param renderer creates the new name from the number of a file
+     * @return the mapping
+     */
+    public static NamesMap create(List<String> fileNames, int[] fileNumbers, NameRenderer renderer) {
+        Integer[] order = new Integer[fileNames.size()];
+        String[] allStems = new String[order.length];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+            allStems[i] = stem(fileNames.get(i));
+        }
+        Arrays.sort(order, Comparator.<Integer, String> comparing(i -> allStems[i]).thenComparing(Comparator.reverseOrder()));
+        String[] stems = new String[order.length];
+        int[] numbers = new int[order.length];
+        int size = 0;
+        for (int i : order) {
+            if (size > 0 && stems[size - 1].equals(allStems[i])) {
+                continue;
+            }
+            stems[size] = allStems[i];
+            numbers[size] = fileNumbers[i];
+            size++;
+        }
+        return new NamesMap(Arrays.copyOf(stems, size), Arrays.copyOf(numbers, size), renderer, null, Map.of(), null, false);
+    }
+
+    /**
+     * create a mapping with explicit new names, e.g. the one recovered from the rename journal
+     *
+     * @param map Map from old names to new names
+     * @return the mapping
+     */
+    public static NamesMap of(Map<String, String> map) {
+        String[] stems = map.keySet().toArray(new String[0]);
+        Arrays.sort(stems);
+        String[] newNames = new String[stems.length];
+        for (int i = 0; i < stems.length; ++i) {
+            newNames[i] = map.get(stems[i]);
+        }
+        return new NamesMap(stems, null, null, newNames, Map.of(), null, false);
+    }
+
+    /**
+     * @param suffixes suffix of the new names by folder name
+     * @return the same mapping with suffixes for the files of the given folders
+     */
+    public NamesMap withFolderSuffixes(Map<String, String> suffixes) {
+        return new NamesMap(stems, numbers, renderer, newNames, Map.copyOf(suffixes), suffix, removeSuffix);
+    }
+
+    /**
+     * @param folderName name of the folder, without its path
+     * @return the mapping for the files of the given folder
+     */
+    public NamesMap forFolder(String folderName) {
+        return new NamesMap(stems, numbers, renderer, newNames, folderSuffixes, folderSuffixes.getOrDefault(folderName, ""), removeSuffix);
+    }
+
+    /**
+     * @return the mapping from the new names back to the old ones
+     */
+    public NamesMap inverse() {
+        String[] inverseStems = new String[stems.length];
+        String[] inverseNames = new String[stems.length];
+        Integer[] order = new Integer[stems.length];
+        for (int i = 0; i < stems.length; ++i) {
+            order[i] = i;
+            inverseStems[i] = getNewName(i);
+        }
+        Arrays.sort(order, Comparator.comparing(i -> inverseStems[i]));
+        String[] sortedStems = new String[stems.length];
+        for (int i = 0; i < order.length; ++i) {
+            sortedStems[i] = inverseStems[order[i]];
+            inverseNames[i] = stems[order[i]];
+        }
+        return new NamesMap(sortedStems, null, null, inverseNames, folderSuffixes, suffix, !removeSuffix);
+    }
+
+    public int size() {
+        return stems.length;
+    }
+
+    public boolean isEmpty() {
+        return stems.length == 0;
+    }
+
+    /**
+     * call the given action with every old name and its new name, without folder suffixes
+     *
+     * @param action action taking the old and the new name
+     */
+    public void forEach(BiConsumer<String, String> action) {
+        for (int i = 0; i < stems.length; ++i) {
+            action.accept(stems[i], getNewName(i));
+        }
+    }
+
+    /**
+     * @param fileName a file name, including the file suffix
+     * @return true if the name of the file without its suffix is one of the old names
+     */
+    public boolean contains(String fileName) {
+        int suffixStart = fileName.lastIndexOf('.');
+        return find(fileName, 0, suffixStart < 0 ? fileName.length() : suffixStart) >= 0;
+    }
+
+    /**
+     * get the new file name given the old one
+     *
+     * @param oldFileName the old file name, including the file suffix
+     * @return the new file name including the file suffix, or the old file name if the file keeps its name
+     */
+    public String getNewFileName(String oldFileName) {
+        return getNewLocation(oldFileName, 0);
+    }
+
+    /**
+     * get the new location of a file given the old one
+     *
+     * @param oldLocation the old location, the file name is the part after the last /
+     * @return the new location, or the old one if the file keeps its name
+     */
+    public String getNewLocation(String oldLocation) {
+        return getNewLocation(oldLocation, oldLocation.lastIndexOf('/') + 1);
+    }
+
+    private String getNewLocation(String oldLocation, int nameStart) {
+        int suffixStart = oldLocation.lastIndexOf('.');
+        if (suffixStart < nameStart) {
+            suffixStart = oldLocation.length();
+        }
+        String folderSuffix = suffix != null ? suffix : folderSuffix(oldLocation, nameStart);
+        int nameEnd = suffixStart;
+        if (removeSuffix && !folderSuffix.isEmpty()) {
+            nameEnd -= folderSuffix.length();
+            if (nameEnd < nameStart || !oldLocation.startsWith(folderSuffix, nameEnd)) {
+                return oldLocation;
+            }
+        }
+        int index = find(oldLocation, nameStart, nameEnd);
+        if (index < 0) {
+            return oldLocation;
+        }
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        buffer.append(oldLocation, 0, nameStart);
+        appendNewName(index, buffer);
+        if (!removeSuffix) {
+            buffer.append(folderSuffix);
+        }
+        buffer.append(oldLocation, suffixStart, oldLocation.length());
+        if (buffer.length() == oldLocation.length() && oldLocation.contentEquals(buffer)) {
+            return oldLocation;
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * @return the suffix of the folder in which the file of the given location is, the empty String if it has none
+     */
+    private String folderSuffix(String location, int nameStart) {
+        if (folderSuffixes.isEmpty() || nameStart < 2) {
+            return "";
+        }
+        int folderStart = location.lastIndexOf('/', nameStart - 2) + 1;
+        return folderSuffixes.getOrDefault(location.substring(folderStart, nameStart - 1), "");
+    }
+
+    private String getNewName(int index) {
+        if (newNames != null) {
+            return newNames[index];
+        }
+        StringBuilder buffer = new StringBuilder();
+        renderer.render(numbers[index], buffer);
+        return buffer.toString();
+    }
+
+    private void appendNewName(int index, StringBuilder buffer) {
+        if (newNames != null) {
+            buffer.append(newNames[index]);
+        } else {
+            renderer.render(numbers[index], buffer);
+        }
+    }
+
+    /**
+     * binary search for the old name that equals the given part of a text
+     */
+    private int find(String text, int start, int end) {
+        int low = 0;
+        int high = stems.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(stems[middle], text, start, end);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * compare like String.compareTo, with the second string limited to the given part of a text
+     */
+    private static int compare(String stem, String text, int start, int end) {
+        int length = end - start;
+        int common = Math.min(stem.length(), length);
+        for (int i = 0; i < common; ++i) {
+            char a = stem.charAt(i);
+            char b = text.charAt(start + i);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return stem.length() - length;
+    }
+
+    static String stem(String fileName) {
+        int suffixStart = fileName.lastIndexOf('.');
+        return suffixStart < 0 ? fileName : fileName.substring(0, suffixStart);
+    }
+}
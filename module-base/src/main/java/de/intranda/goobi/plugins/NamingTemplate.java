@@ -0,0 +1,216 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Template of the new file names, compiled once when the plugin is initialized. All variables are replaced while compiling, so that only the
+ * literal parts and the counters are left. Rendering a name appends these parts to the given buffer and pads the counters with zeros, without any
+ * further allocation. A compiled template is immutable and can be used by any number of threads at the same time.
+ *
+ * Syntax: {counter} is the number of the file, padded to the default number of digits, {counter:000000} is padded to the given number of zeros.
+ * Everything else is passed to the variable replacer, e.g. {meta.CatalogIDDigital} or {processtitle}.
+ */
+public class NamingTemplate implements NamesMap.NameRenderer {
+
+    private static final Pattern COUNTER = Pattern.compile("\\{counter(?::(0+))?\\}");
+
+    // literal parts before, between and after the counters, always one more than there are counters
+    private final String[] literals;
+    // minimum number of digits of every counter
+    private final int[] paddings;
+
+    private NamingTemplate(String[] literals, int[] paddings) {
+        this.literals = literals;
+        this.paddings = paddings;
+    }
+
+    /**
+     * compile a template
+     *
+     * @param template the template
+     * @param defaultPadding number of digits of a counter without explicit padding
+     * @param variables replaces the variables in the literal parts of the template
+     * @return the compiled template
+     * @throws IllegalArgumentException if the template has no counter or would create names that are not valid file names
+     */
+    public static NamingTemplate compile(String template, int defaultPadding, UnaryOperator<String> variables) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> paddings = new ArrayList<>();
+        Matcher matcher = COUNTER.matcher(template);
+        int position = 0;
+        while (matcher.find()) {
+            literals.add(resolve(template, template.substring(position, matcher.start()), variables));
+            paddings.add(matcher.group(1) == null ? defaultPadding : matcher.group(1).length());
+            position = matcher.end();
+        }
+        literals.add(resolve(template, template.substring(position), variables));
+        if (paddings.isEmpty()) {
+            throw new IllegalArgumentException("The naming template " + template + " does not contain {counter}, all files would get the same name");
+        }
+        return new NamingTemplate(literals.toArray(new String[0]), paddings.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static String resolve(String template, String literal, UnaryOperator<String> variables) {
+        String resolved = literal.isEmpty() ? literal : variables.apply(literal);
+        for (int i = 0; i < resolved.length(); ++i) {
+            char c = resolved.charAt(i);
+            if (c == '/' || c == '\\' || c == '\t' || c == '\n' || c == '\r') {
+                throw new IllegalArgumentException("The naming template " + template + " creates names with the invalid character '" + c + "': "
+                        + resolved);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * checks if all counters have enough digits for keeping the names of the given number of files of equal lengths
+     *
+     * @param count the total number of files that should be renamed
+     * @return true if every counter is padded to at least the number of digits of count
+     */
+    public boolean fits(int count) {
+        int digits = digits(count);
+        for (int padding : paddings) {
+            if (padding < digits) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void render(int number, StringBuilder target) {
+        int digits = digits(number);
+        for (int i = 0; i < paddings.length; ++i) {
+            target.append(literals[i]);
+            for (int d = digits; d < paddings[i]; ++d) {
+                target.append('0');
+            }
+            target.append(number);
+        }
+        target.append(literals[paddings.length]);
+    }
+
+    /**
+     * get the number of a name that was rendered by this template
+     *
+     * @param stem a file name without its suffix
+     * @return the number the name was rendered from, or -1 if the template does not render this name for any number
+     */
+    public int parse(String stem) {
+        int start = literals[0].length();
+        if (!stem.startsWith(literals[0])) {
+            return -1;
+        }
+        int end = start;
+        while (end < stem.length() && end - start < 9 && Character.isDigit(stem.charAt(end))) {
+            end++;
+        }
+        if (end == start) {
+            return -1;
+        }
+        int number = Integer.parseInt(stem, start, end, 10);
+        if (number < 1) {
+            return -1;
+        }
+        StringBuilder buffer = new StringBuilder(stem.length());
+        render(number, buffer);
+        return stem.contentEquals(buffer) ? number : -1;
+    }
+
+    /**
+     * number the given files so that as many of them as possible keep their names. Files whose names were rendered by this template keep their
+     * numbers as long as the numbers increase in the order of the files, which is the longest increasing run of numbers, not necessarily a
+     * contiguous one. All other files, i.e. new ones and the ones out of sequence, are numbered in their order after the highest number in use.
+     *
+     * @param fileNames names of the files in the order in which they should be numbered
+     * @return number of the file at the same position, 0 for a file whose name comes again later in the list
+     */
+    public int[] appendNumbers(List<String> fileNames) {
+        int size = fileNames.size();
+        String[] stems = new String[size];
+        Map<String, Integer> lastPositions = new HashMap<>();
+        for (int i = 0; i < size; ++i) {
+            stems[i] = NamesMap.stem(fileNames.get(i));
+            lastPositions.put(stems[i], i);
+        }
+        int[] parsed = new int[size];
+        int highest = 0;
+        for (int i = 0; i < size; ++i) {
+            parsed[i] = lastPositions.get(stems[i]) == i ? parse(stems[i]) : 0;
+            highest = Math.max(highest, parsed[i]);
+        }
+
+        // longest strictly increasing subsequence of the parsed numbers: tails[k] is the position ending the best run of length k + 1
+        int[] tails = new int[size];
+        int[] previous = new int[size];
+        int length = 0;
+        for (int i = 0; i < size; ++i) {
+            if (parsed[i] < 1) {
+                continue;
+            }
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (parsed[tails[middle]] < parsed[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        int[] numbers = new int[size];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            numbers[i] = parsed[i];
+        }
+        int next = highest + 1;
+        for (int i = 0; i < size; ++i) {
+            if (numbers[i] == 0 && lastPositions.get(stems[i]) == i) {
+                numbers[i] = next++;
+            }
+        }
+        return numbers;
+    }
+
+    private static int digits(int number) {
+        int digits = 1;
+        while (number >= 10) {
+            number /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
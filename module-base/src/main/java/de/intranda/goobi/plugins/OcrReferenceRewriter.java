@@ -0,0 +1,167 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Rewrites the references to images inside of OCR files without building the document in memory: the text of sourceImageInformation/fileName in
+ * ALTO and the imageFilename attribute of Page in PAGE XML. Elements are matched by their local names, so that every version of the formats is
+ * covered. The result is written to a hidden file next to the original and moved over it in one step. An instance is not thread safe, every thread
+ * needs its own.
+ */
+@Log4j2
+public class OcrReferenceRewriter {
+
+    private static final String SOURCE_IMAGE_INFORMATION = "sourceImageInformation";
+    private static final String FILE_NAME = "fileName";
+    private static final String PAGE = "Page";
+    private static final String IMAGE_FILENAME = "imageFilename";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final XMLInputFactory inputFactory;
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    private final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+    public OcrReferenceRewriter() {
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * rewrite all image references of an OCR file
+     *
+     * @param ocrFile the ALTO or PAGE file
+     * @param newReferences function returning the new reference for an old one, or the old reference if it should be kept
+     * @return the number of changed references, the file is left untouched if this is 0
+     * @throws IOException if the file cannot be read, parsed or replaced
+     */
+    public int rewrite(Path ocrFile, UnaryOperator<String> newReferences) throws IOException {
+        Path tempFile = ocrFile.resolveSibling("." + ocrFile.getFileName() + TEMP_SUFFIX);
+        int changed;
+        try (InputStream in = Files.newInputStream(ocrFile); OutputStream out = Files.newOutputStream(tempFile)) {
+            changed = copy(in, out, newReferences);
+        } catch (XMLStreamException e) {
+            Files.deleteIfExists(tempFile);
+            throw new IOException("Error rewriting the image references of " + ocrFile + ": " + e.getMessage(), e);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+
+        if (changed == 0) {
+            Files.delete(tempFile);
+            return 0;
+        }
+        Files.move(tempFile, ocrFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return changed;
+    }
+
+    private int copy(InputStream in, OutputStream out, UnaryOperator<String> newReferences) throws XMLStreamException {
+        XMLEventReader reader = inputFactory.createXMLEventReader(in);
+        XMLEventWriter writer = outputFactory.createXMLEventWriter(out, "UTF-8");
+        int changed = 0;
+        boolean inSourceImageInformation = false;
+        // text of the current fileName element, null outside of it
+        StringBuilder fileName = null;
+        try {
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (fileName != null) {
+                    if (event.isCharacters()) {
+                        // the text may arrive in several pieces
+                        fileName.append(event.asCharacters().getData());
+                        continue;
+                    }
+                    if (event.isEndElement()) {
+                        String oldReference = fileName.toString();
+                        String newReference = newReferences.apply(oldReference.strip());
+                        if (!newReference.equals(oldReference.strip())) {
+                            oldReference = newReference;
+                            changed++;
+                        }
+                        writer.add(eventFactory.createCharacters(oldReference));
+                        fileName = null;
+                    }
+                } else if (event.isStartElement()) {
+                    StartElement element = event.asStartElement();
+                    String name = element.getName().getLocalPart();
+                    if (SOURCE_IMAGE_INFORMATION.equals(name)) {
+                        inSourceImageInformation = true;
+                    } else if (inSourceImageInformation && FILE_NAME.equals(name)) {
+                        fileName = new StringBuilder();
+                    } else if (PAGE.equals(name)) {
+                        Attribute image = element.getAttributeByName(new QName(IMAGE_FILENAME));
+                        if (image != null) {
+                            String newReference = newReferences.apply(image.getValue());
+                            if (!newReference.equals(image.getValue())) {
+                                event = replaceAttribute(element, image.getName(), newReference);
+                                changed++;
+                            }
+                        }
+                    }
+                } else if (event.isEndElement() && SOURCE_IMAGE_INFORMATION.equals(event.asEndElement().getName().getLocalPart())) {
+                    inSourceImageInformation = false;
+                }
+                writer.add(event);
+            }
+            writer.flush();
+        } finally {
+            reader.close();
+            writer.close();
+        }
+        return changed;
+    }
+
+    private StartElement replaceAttribute(StartElement element, QName name, String value) {
+        List<Attribute> attributes = new ArrayList<>();
+        for (Iterator<Attribute> it = element.getAttributes(); it.hasNext();) {
+            Attribute attribute = it.next();
+            attributes.add(name.equals(attribute.getName()) ? eventFactory.createAttribute(attribute.getName(), value) : attribute);
+        }
+        QName elementName = element.getName();
+        return eventFactory.createStartElement(elementName.getPrefix(), elementName.getNamespaceURI(), elementName.getLocalPart(),
+                attributes.iterator(), element.getNamespaces(), element.getNamespaceContext());
+    }
+}
@@ -0,0 +1,145 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Keeps track of the runs of the plugin that have not finished yet. A process is claimed while its files are renamed or its run is queued, so that
+ * no second run in this Goobi instance touches the same folders at the same time. A queued asynchronous run additionally marks the process folder
+ * with a file that is only removed when its step is closed or set to error. The marks survive a restart of Goobi, so the runs that were queued or
+ * running can be found and queued again afterwards.
+ */
+@Log4j2
+public class PendingRuns {
+
+    public static final String FILE_NAME = "rename_files_pending";
+
+    /**
+     * finds the candidates of pending runs, e.g. the steps of the plugin that are still in work
+     */
+    @FunctionalInterface
+    public interface CandidateSource<T> {
+        List<T> find() throws IOException;
+    }
+
+    /**
+     * gets the process folder of a candidate, where its mark would be
+     */
+    @FunctionalInterface
+    public interface ProcessFolder<T> {
+        Path of(T candidate) throws IOException;
+    }
+
+    // ids of the processes whose files are renamed or whose run is queued in this Goobi instance
+    private final Set<Integer> claimed = ConcurrentHashMap.newKeySet();
+    // true once the runs that were pending before the start of Goobi were queued again
+    private boolean requeued;
+
+    /**
+     * @param processId id of the process
+     * @return true if the process was claimed, false if another run of it is queued or running
+     */
+    public boolean claim(Integer processId) {
+        return claimed.add(processId);
+    }
+
+    /**
+     * @param processId id of a process that was claimed
+     */
+    public void release(Integer processId) {
+        claimed.remove(processId);
+    }
+
+    /**
+     * mark the process folder of a queued run
+     *
+     * @param processFolder the process folder
+     * @param stepId id of the step of the run
+     * @throws IOException if the mark cannot be written
+     */
+    public static void mark(Path processFolder, Integer stepId) throws IOException {
+        Files.writeString(processFolder.resolve(FILE_NAME), String.valueOf(stepId));
+    }
+
+    /**
+     * remove the mark of a finished run
+     *
+     * @param processFolder the process folder
+     */
+    public static void unmark(Path processFolder) {
+        try {
+            Files.deleteIfExists(processFolder.resolve(FILE_NAME));
+        } catch (IOException e) {
+            log.error("Error removing {}: {}", processFolder.resolve(FILE_NAME), e.toString());
+        }
+    }
+
+    /**
+     * @param processFolder the process folder
+     * @return true if the process folder is marked by a queued asynchronous run
+     */
+    public static boolean isMarked(Path processFolder) {
+        return Files.exists(processFolder.resolve(FILE_NAME));
+    }
+
+    /**
+     * queue the runs again whose process folders are still marked, once. If the candidates cannot be found, nothing is queued and the next call
+     * tries again.
+     *
+     * @param source finds the candidates
+     * @param processFolder gets the process folder of a candidate
+     * @param queue queues the run of a candidate
+     * @return the number of runs that were queued again
+     */
+    public synchronized <T> int requeueOnce(CandidateSource<T> source, ProcessFolder<T> processFolder, Consumer<T> queue) {
+        if (requeued) {
+            return 0;
+        }
+        List<T> candidates;
+        try {
+            candidates = source.find();
+        } catch (IOException e) {
+            log.error("Cannot look for the runs that were pending before the start of Goobi: {}", e.toString());
+            return 0;
+        }
+        requeued = true;
+        int queued = 0;
+        for (T candidate : candidates) {
+            try {
+                if (isMarked(processFolder.of(candidate))) {
+                    queue.accept(candidate);
+                    queued++;
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Cannot queue the pending run {} again: {}", candidate, e.toString());
+            }
+        }
+        return queued;
+    }
+}
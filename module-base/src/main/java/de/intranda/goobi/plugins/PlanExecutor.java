@@ -0,0 +1,215 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.sub.goobi.helper.StorageProviderInterface;
+import lombok.Setter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Executes the plans of the folders of one run. Every chain is recorded in the rename journal before its first move, and every move after it is
+ * done. The cycles of a plan park a file in the temp folder of the folder, which is created for the plan and removed afterwards if it was not
+ * there before. Chains never share a name, so independent chains may run at the same time, only the moves inside of a chain keep their order.
+ */
+@Log4j2
+public class PlanExecutor {
+
+    // name of the subfolder that is used to break rename cycles
+    public static final String TEMP_FOLDER = "temp";
+
+    private final StorageProviderInterface storageProvider;
+    private final RenameJournal renameJournal;
+    private final RenameStatistics statistics;
+    private final RenameProgress progress;
+    // true if the files are stored on S3, where the temp folder is never on another file system
+    @Setter
+    private boolean useS3;
+    // executes independent chains of moves at the same time, null to execute them one after another
+    @Setter
+    private ExecutorService chainExecutor;
+    // number of files that are copied at the same time when the temp folder of a folder is on another file system
+    @Setter
+    private int crossDeviceThreads = 1;
+    // true if the number of moves in flight per storage root follows the latency of the storage
+    private boolean adaptiveConcurrency;
+    private int targetLatency;
+    private int maxConcurrency;
+
+    public PlanExecutor(StorageProviderInterface storageProvider, RenameJournal renameJournal, RenameStatistics statistics, RenameProgress progress) {
+        this.storageProvider = storageProvider;
+        this.renameJournal = renameJournal;
+        this.statistics = statistics;
+        this.progress = progress;
+    }
+
+    /**
+     * let the number of moves in flight per storage root follow the latency of the storage
+     * 
+     * @param targetLatency target of the 99th percentile of the move latency in milliseconds
+     * @param maxConcurrency highest number of moves in flight per storage root
+     */
+    public void setAdaptiveConcurrency(int targetLatency, int maxConcurrency) {
+        this.adaptiveConcurrency = true;
+        this.targetLatency = targetLatency;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * execute the plan of a folder, using its temp folder for the cycles
+     * 
+     * @param folder path as string of the folder
+     * @param snapshot snapshot of the folder, updated after every move
+     * @param plan the plan of the folder
+     * @param progressFolder name of the folder whose progress counts the moves
+     * @throws IOException
+     */
+    public void execute(String folder, FolderSnapshot snapshot, RenamePlan plan, String progressFolder) throws IOException {
+        Path folderPath = snapshot.getFolder();
+        Path tempFolderPath = folderPath.resolve(TEMP_FOLDER);
+        boolean createTempFolder = plan.getCycles() > 0 && !snapshot.isTempFolderPresent();
+        if (createTempFolder) {
+            storageProvider.createDirectories(tempFolderPath);
+        }
+
+        // a temp folder that is already there may be a mount point, then parking a file is a copy and the cycles are copied at the same time
+        boolean crossDevice = plan.getCycles() > 0 && !useS3 && !createTempFolder
+                && CrossDeviceMover.crossesFileStores(folderPath, tempFolderPath);
+        if (crossDevice) {
+            log.debug("Temp folder {} is on another file system, {} files are copied there and back", tempFolderPath, plan.getCycles());
+        }
+
+        AdaptiveLimiter limiter = null;
+        if (adaptiveConcurrency) {
+            limiter = AdaptiveLimiter.forRoot(RenameScheduler.mountOf(folderPath).toString(), targetLatency, maxConcurrency);
+        }
+
+        int[] chainIds = renameJournal.planned(folder, plan);
+        if (chainExecutor != null) {
+            executeChainsInParallel(chainExecutor, snapshot, plan, chainIds, crossDevice, limiter, progressFolder);
+        } else if (crossDevice && plan.getCycles() > 1) {
+            ExecutorService copyExecutor = Executors.newFixedThreadPool(Math.min(crossDeviceThreads, plan.getCycles()));
+            try {
+                executeChainsInParallel(copyExecutor, snapshot, plan, chainIds, crossDevice, limiter, progressFolder);
+            } finally {
+                copyExecutor.shutdownNow();
+            }
+        } else {
+            for (int i = 0; i < chainIds.length; ++i) {
+                executeChain(snapshot, plan.getChains().get(i), chainIds[i], crossDevice, limiter, progressFolder);
+            }
+        }
+
+        // a temp folder that was already there may contain files of an earlier run, so only remove our own
+        if (createTempFolder) {
+            storageProvider.deleteDir(tempFolderPath);
+            log.debug("Temp folder deleted: " + tempFolderPath.toString());
+        }
+    }
+
+    /**
+     * execute the moves of one chain in their order
+     * 
+     * @param snapshot snapshot of the folder, updated after every move
+     * @param chain the moves of the chain
+     * @param chainId id of the chain in the rename journal
+     * @param crossDevice true if the temp folder is on another file system than the folder
+     * @param limiter limit of the moves in flight on the storage root of the folder, null if the number is fixed
+     * @param progressFolder name of the folder whose progress counts the moves
+     * @throws IOException
+     */
+    private void executeChain(FolderSnapshot snapshot, List<RenamePlan.Move> chain, int chainId, boolean crossDevice, AdaptiveLimiter limiter,
+            String progressFolder) throws IOException {
+        Path folderPath = snapshot.getFolder();
+        for (int j = 0; j < chain.size(); ++j) {
+            RenamePlan.Move move = chain.get(j);
+            if (snapshot.contains(move.target())) {
+                throw new IOException("Cannot rename " + move.source() + " in " + folderPath + ", " + move.target() + " already exists");
+            }
+            // a file parked in the temp folder must be on record before the rest of its cycle is moved
+            boolean parked = move.target().startsWith(TEMP_FOLDER + "/");
+            if (crossDevice && (parked || move.source().startsWith(TEMP_FOLDER + "/"))) {
+                statistics.addBytes(CrossDeviceMover.move(folderPath.resolve(move.source()), folderPath.resolve(move.target())));
+            } else if (limiter != null) {
+                limiter.run(() -> storageProvider.move(folderPath.resolve(move.source()), folderPath.resolve(move.target())));
+            } else {
+                storageProvider.move(folderPath.resolve(move.source()), folderPath.resolve(move.target()));
+            }
+            snapshot.moved(move.source(), move.target());
+            renameJournal.executed(chainId, j + 1, parked);
+            if (!parked) {
+                progress.filesDone(progressFolder, 1);
+            }
+        }
+    }
+
+    /**
+     * execute the chains of a folder at the same time. Chains never share a name, so only the moves inside of a chain have to keep their order.
+     * 
+     * @param executor executor of the chains, its number of threads limits how many chains run at the same time
+     * @param snapshot snapshot of the folder, updated after every move
+     * @param plan the plan of the folder
+     * @param chainIds ids of the chains in the rename journal
+     * @param crossDevice true if the temp folder is on another file system than the folder
+     * @param limiter limit of the moves in flight on the storage root of the folder, null if the number is fixed
+     * @param progressFolder name of the folder whose progress counts the moves
+     * @throws IOException if any chain failed
+     */
+    private void executeChainsInParallel(ExecutorService executor, FolderSnapshot snapshot, RenamePlan plan, int[] chainIds, boolean crossDevice,
+            AdaptiveLimiter limiter, String progressFolder) throws IOException {
+        List<Future<?>> futures = new ArrayList<>(chainIds.length);
+        for (int i = 0; i < chainIds.length; ++i) {
+            List<RenamePlan.Move> chain = plan.getChains().get(i);
+            int chainId = chainIds[i];
+            futures.add(executor.submit(() -> {
+                executeChain(snapshot, chain, chainId, crossDevice, limiter, progressFolder);
+                return null;
+            }));
+        }
+        IOException error = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while renaming files in folder " + snapshot.getFolder(), e);
+            } catch (ExecutionException e) {
+                IOException cause = e.getCause() instanceof IOException ioe ? ioe : new IOException(e.getCause());
+                if (error == null) {
+                    error = cause;
+                } else {
+                    error.addSuppressed(cause);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Check of all folders of a process before any file is moved. Every folder is listed once and every file is classified, and the plans of all
+ * folders are created up front, so that a run either has a complete plan or a complete list of errors.
+ *
+ * Errors are files without a suffix, files of the derivate folder with the same name apart from their suffixes, files left in a temp folder, and
+ * plans that cannot be executed because two files would get the same name. Files of the other folders whose names do not belong to any file of the
+ * derivate folder keep their names and are reported as warnings, as are configured folders that do not exist.
+ */
+public class Preflight {
+
+    /**
+     * the listing and the plan of one folder
+     */
+    public record FolderCheck(FolderSnapshot snapshot, RenamePlan plan) {
+    }
+
+    // maximum number of file names that are listed in one message
+    private static final int MAX_LISTED_NAMES = 10;
+
+    private final NamesMap namesMap;
+    private final String tempFolder;
+    // mapping from the new names back to the old ones, shared by all folders
+    private NamesMap inverse;
+
+    @Getter
+    private final List<String> errors = new ArrayList<>();
+    @Getter
+    private final List<String> warnings = new ArrayList<>();
+    // checked folders in the order in which they are renamed
+    private final Map<String, FolderCheck> folders = new LinkedHashMap<>();
+
+    /**
+     * @param namesMap mapping from old names to new names for all folders
+     * @param tempFolder name of the subfolder that is used to break rename cycles
+     */
+    public Preflight(NamesMap namesMap, String tempFolder) {
+        this.namesMap = namesMap;
+        this.tempFolder = tempFolder;
+    }
+
+    /**
+     * check the derivate folder, whose files define the old names
+     *
+     * @param folder path as string of the folder
+     * @param snapshot listing of the folder
+     */
+    public void checkDerivateFolder(String folder, FolderSnapshot snapshot) {
+        Map<String, String> stems = new HashMap<>();
+        List<String> duplicates = new ArrayList<>();
+        for (String fileName : snapshot.getFileNames()) {
+            int suffixStart = fileName.lastIndexOf('.');
+            if (suffixStart < 0) {
+                continue;
+            }
+            String previous = stems.putIfAbsent(fileName.substring(0, suffixStart), fileName);
+            if (previous != null) {
+                duplicates.add(previous + " and " + fileName);
+            }
+        }
+        if (!duplicates.isEmpty()) {
+            errors.add(String.format("%s files in %s have the same name apart from their suffixes: %s", duplicates.size(), folder, list(duplicates)));
+        }
+        checkFolder(folder, snapshot);
+    }
+
+    /**
+     * check a folder and create its plan
+     *
+     * @param folder path as string of the folder
+     * @param snapshot listing of the folder
+     */
+    public void checkFolder(String folder, FolderSnapshot snapshot) {
+        checkTempFolder(snapshot);
+        String folderName = snapshot.getFolder().getFileName().toString();
+        NamesMap folderNames = namesMap.forFolder(folderName);
+        // mapping from the new names back to the old ones, to recognize files that were renamed by an earlier run
+        NamesMap previousNames = null;
+        List<String> withoutSuffix = new ArrayList<>();
+        List<String> unmatched = new ArrayList<>();
+        for (String fileName : snapshot.getFileNames()) {
+            if (fileName.lastIndexOf('.') < 0) {
+                withoutSuffix.add(fileName);
+            } else if (!folderNames.contains(fileName)) {
+                if (previousNames == null) {
+                    previousNames = inverse().forFolder(folderName);
+                }
+                if (previousNames.getNewFileName(fileName).equals(fileName)) {
+                    unmatched.add(fileName);
+                }
+            }
+        }
+        if (!withoutSuffix.isEmpty()) {
+            errors.add(String.format("%s files in %s have no suffix: %s", withoutSuffix.size(), folder, list(withoutSuffix)));
+        }
+        if (!unmatched.isEmpty()) {
+            warnings.add(String.format("%s files in %s do not match any file of the derivate folder and keep their names: %s", unmatched.size(),
+                    folder, list(unmatched)));
+        }
+        try {
+            folders.put(folder, new FolderCheck(snapshot, RenamePlan.create(snapshot.getFileNames(), folderNames::getNewFileName, tempFolder)));
+        } catch (IOException e) {
+            errors.add(String.format("The files in %s cannot be renamed: %s", folder, e.getMessage()));
+        }
+    }
+
+    /**
+     * check a subfolder of a configured folder in the recursive mode. Its plan is not kept, since the subfolders are listed again when they are
+     * renamed, and only plans that cannot be executed are reported. Files in subfolders often belong to a page without carrying its name, e.g. tiles,
+     * so files that do not match are not reported. Subfolders are checked by several threads at the same time.
+     *
+     * @param snapshot listing of the subfolder
+     * @param folderName name of the configured folder that contains the subfolder, its suffix is used for the new names
+     */
+    public void checkSubfolder(FolderSnapshot snapshot, String folderName) {
+        checkTempFolder(snapshot);
+        NamesMap folderNames = namesMap.forFolder(folderName);
+        try {
+            RenamePlan.create(snapshot.getFileNames(), folderNames::getNewFileName, tempFolder);
+        } catch (IOException e) {
+            synchronized (errors) {
+                errors.add(String.format("The files in %s cannot be renamed: %s", snapshot.getFolder(), e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * report files that were left in the temp folder. They carry the names they should get in the folder, which may be taken by now, and would be in
+     * the way of files parked for a cycle under the same name.
+     */
+    private void checkTempFolder(FolderSnapshot snapshot) {
+        List<String> leftovers = snapshot.getTempFolderFiles();
+        if (!leftovers.isEmpty()) {
+            synchronized (errors) {
+                errors.add(String.format("%s files of an interrupted run are left in %s, move them back or remove them: %s", leftovers.size(),
+                        snapshot.getFolder().resolve(tempFolder), list(leftovers)));
+            }
+        }
+    }
+
+    /**
+     * note a configured folder that does not exist, it is skipped
+     *
+     * @param folder path as string of the folder
+     */
+    public void folderMissing(String folder) {
+        warnings.add(String.format("The folder %s does not exist and is skipped", folder));
+    }
+
+    /**
+     * @return true if no errors were found
+     */
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * @return the checked folders in the order in which they are renamed
+     */
+    public List<String> getFolders() {
+        return new ArrayList<>(folders.keySet());
+    }
+
+    /**
+     * @param folder path as string of the folder
+     * @return the listing and the plan of the folder, or null if it was not checked
+     */
+    public FolderCheck getFolder(String folder) {
+        return folders.get(folder);
+    }
+
+    /**
+     * @return the mapping from the new names back to the old ones, created when it is needed the first time
+     */
+    private NamesMap inverse() {
+        if (inverse == null) {
+            inverse = namesMap.inverse();
+        }
+        return inverse;
+    }
+
+    private static String list(List<String> names) {
+        if (names.size() <= MAX_LISTED_NAMES) {
+            return String.join(", ", names);
+        }
+        return String.join(", ", names.subList(0, MAX_LISTED_NAMES)) + ", ...";
+    }
+}
@@ -0,0 +1,261 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+import org.goobi.production.enums.PluginReturnValue;
+
+import de.sub.goobi.helper.enums.StepStatus;
+import de.sub.goobi.persistence.managers.ProcessManager;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Renames the files of many processes, e.g. all processes of a Rosetta delivery, with one shared {@link RenameScheduler}. Every process is run by
+ * its own instance of the plugin, configured like its step, on a pool of batch threads. The storage work of all processes goes through the
+ * scheduler, so the limits of the batch hold no matter how many processes are renamed at the same time.
+ *
+ * A process that is renamed by another run in this Goobi instance, or whose asynchronous run is pending, is left out and reported as failed. Steps
+ * that are in work, i.e. waiting for the plugin, are closed after a successful run and set to error after a failed one, like an asynchronous run
+ * does; steps in any other state are left as they are. Operators start a batch through JMX with the operation renameProcesses of
+ * {@link RenameMetrics}, which runs it in the background by {@link #startInBackground}.
+ */
+@Log4j2
+public class RenameBatch {
+
+    /**
+     * outcome of one process
+     *
+     * @param processTitle title of the process
+     * @param successful true if all files of the process were renamed
+     * @param error the reason of the failure, null if the process was renamed
+     */
+    public record Result(String processTitle, boolean successful, String error) {
+    }
+
+    /**
+     * outcome of the whole batch, the results in the order of the processes
+     */
+    public record Report(List<Result> results, long millis) {
+
+        public int getFailed() {
+            return (int) results.stream().filter(result -> !result.successful()).count();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(String.format("%s processes renamed in %s ms, %s failed", results.size() - getFailed(), millis, getFailed()));
+            for (Result result : results) {
+                if (!result.successful()) {
+                    builder.append("\n").append(result.processTitle()).append(": ").append(result.error());
+                }
+            }
+            return builder.toString();
+        }
+    }
+
+    // the batch that was started through JMX last, and its report once it is done
+    private static RenameBatch backgroundBatch;
+    private static Report backgroundReport;
+
+    private final RenameScheduler scheduler;
+    // number of processes that are renamed at the same time
+    private final int processThreads;
+
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger finished = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * @param scheduler the shared I/O budget of the batch
+     * @param processThreads number of processes that are renamed at the same time, their storage work is limited by the scheduler
+     */
+    public RenameBatch(RenameScheduler scheduler, int processThreads) {
+        this.scheduler = scheduler;
+        this.processThreads = Math.max(1, processThreads);
+    }
+
+    /**
+     * rename the files of all processes and wait until all of them are done. The processes are started in the given order.
+     *
+     * @param processes the processes to rename
+     * @param stepTitle title of the step whose configuration is used for each process
+     * @return the report of the batch
+     */
+    public Report run(Collection<Process> processes, String stepTitle) {
+        long start = System.currentTimeMillis();
+        total.set(processes.size());
+        finished.set(0);
+        failed.set(0);
+        List<Future<Result>> futures = new ArrayList<>(processes.size());
+        List<String> titles = new ArrayList<>(processes.size());
+        ExecutorService executor = Executors.newFixedThreadPool(processThreads, Thread.ofPlatform().name("rename-files-before-rosetta-batch-", 1).factory());
+        try {
+            for (Process process : processes) {
+                titles.add(process.getTitel());
+                futures.add(executor.submit(() -> renameProcess(process, stepTitle)));
+            }
+            List<Result> results = new ArrayList<>(futures.size());
+            try {
+                for (int i = 0; i < futures.size(); ++i) {
+                    results.add(waitForProcess(titles.get(i), futures.get(i)));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                List<Runnable> notStarted = executor.shutdownNow();
+                for (int i = results.size(); i < futures.size(); ++i) {
+                    results.add(interruptedResult(titles.get(i), futures.get(i), notStarted));
+                }
+            }
+            Report report = new Report(results, System.currentTimeMillis() - start);
+            log.info("Batch of {} processes finished: {}", processes.size(), report);
+            return report;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * start a batch on a background thread, unless the batch that was started before is still running
+     *
+     * @param processIds ids of the processes to rename, in the order in which they are started
+     * @param stepTitle title of the step whose configuration is used for each process
+     * @param globalLimit number of processes and of storage tasks that run at the same time in the whole batch
+     * @param mountLimit number of storage tasks that run at the same time on one file system
+     * @return a message whether the batch was started
+     */
+    public static synchronized String startInBackground(List<Integer> processIds, String stepTitle, int globalLimit, int mountLimit) {
+        if (backgroundBatch != null && backgroundReport == null) {
+            return "A batch is running already: " + backgroundBatch.getProgress();
+        }
+        RenameBatch batch = new RenameBatch(new RenameScheduler(globalLimit, mountLimit), globalLimit);
+        backgroundBatch = batch;
+        backgroundReport = null;
+        Thread.ofPlatform().name("rename-files-before-rosetta-batch").daemon().start(() -> {
+            List<Process> processes = new ArrayList<>(processIds.size());
+            for (Integer processId : processIds) {
+                Process process = ProcessManager.getProcessById(processId);
+                if (process == null) {
+                    log.warn("Process {} of the batch does not exist", processId);
+                } else {
+                    processes.add(process);
+                }
+            }
+            Report report = batch.run(processes, stepTitle);
+            synchronized (RenameBatch.class) {
+                backgroundReport = report;
+            }
+        });
+        return String.format("Batch of %s processes started", processIds.size());
+    }
+
+    /**
+     * @return the progress of the batch that was started through JMX, or its report once it is done
+     */
+    public static synchronized String getBackgroundProgress() {
+        if (backgroundBatch == null) {
+            return "";
+        }
+        return backgroundReport == null ? backgroundBatch.getProgress() : backgroundReport.toString();
+    }
+
+    /**
+     * @return the progress of the running batch
+     */
+    public String getProgress() {
+        return String.format("%s of %s processes done, %s failed", finished.get(), total.get(), failed.get());
+    }
+
+    private Result renameProcess(Process process, String stepTitle) {
+        Result result;
+        Step step = findStep(process, stepTitle);
+        if (step == null) {
+            result = new Result(process.getTitel(), false, "the process has no step " + stepTitle);
+        } else {
+            RenameFilesBeforeRosettaStepPlugin plugin = new RenameFilesBeforeRosettaStepPlugin();
+            plugin.initialize(step, "");
+            plugin.setScheduler(scheduler);
+            PluginReturnValue returnValue = plugin.run();
+            if (step.getBearbeitungsstatusEnum() == StepStatus.INWORK) {
+                plugin.closeStep(returnValue);
+            }
+            boolean successful = returnValue == PluginReturnValue.FINISH;
+            result = new Result(process.getTitel(), successful, successful ? null : plugin.getErrorMessage());
+        }
+        return count(result);
+    }
+
+    private Result count(Result result) {
+        if (!result.successful()) {
+            failed.incrementAndGet();
+        }
+        finished.incrementAndGet();
+        log.debug("Batch progress: {}", getProgress());
+        return result;
+    }
+
+    private Result waitForProcess(String processTitle, Future<Result> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            log.error("Error renaming the files of process {}: {}", processTitle, e.getCause().toString());
+            return count(new Result(processTitle, false, e.getCause().toString()));
+        }
+    }
+
+    /**
+     * the result of a process when the batch was interrupted. Processes that were not started or failed are counted as failed here, a process that
+     * is still being renamed counts itself when it is done.
+     */
+    private Result interruptedResult(String processTitle, Future<Result> future, List<Runnable> notStarted) {
+        if (future.state() == Future.State.SUCCESS) {
+            return future.resultNow();
+        }
+        Result result = new Result(processTitle, false, "interrupted");
+        if (notStarted.contains(future) || future.state() == Future.State.FAILED) {
+            return count(result);
+        }
+        return result;
+    }
+
+    private static Step findStep(Process process, String stepTitle) {
+        List<Step> steps = process.getSchritte();
+        if (steps == null) {
+            return null;
+        }
+        for (Step step : steps) {
+            if (stepTitle.equals(step.getTitel())) {
+                return step;
+            }
+        }
+        return null;
+    }
+}
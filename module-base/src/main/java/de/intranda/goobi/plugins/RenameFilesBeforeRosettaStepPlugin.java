@@ -1,11 +1,10 @@
 package de.intranda.goobi.plugins;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
 import java.util.ArrayList;
-import java.util.Date;
 
 /**
  * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
@@ -28,15 +27,22 @@ import java.util.Date;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import org.apache.commons.configuration.SubnodeConfiguration;
 import org.apache.commons.lang.StringUtils;
-import org.goobi.beans.JournalEntry;
 import org.goobi.beans.Process;
 import org.goobi.beans.Step;
-import org.goobi.beans.JournalEntry.EntryType;
 import org.goobi.production.enums.LogType;
 import org.goobi.production.enums.PluginGuiType;
 import org.goobi.production.enums.PluginReturnValue;
@@ -46,18 +52,22 @@ import org.goobi.production.plugin.interfaces.IStepPluginVersion2;
 
 import com.jcabi.log.Logger;
 
-import de.sub.goobi.config.ConfigPlugins;
+import de.sub.goobi.config.ConfigurationHelper;
+import de.sub.goobi.helper.CloseStepHelper;
 import de.sub.goobi.helper.StorageProvider;
 import de.sub.goobi.helper.StorageProviderInterface;
 import de.sub.goobi.helper.VariableReplacer;
+import de.sub.goobi.helper.enums.StepStatus;
 import de.sub.goobi.helper.exceptions.DAOException;
 import de.sub.goobi.helper.exceptions.SwapException;
-import de.sub.goobi.persistence.managers.JournalManager;
+import de.sub.goobi.persistence.managers.StepManager;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.log4j.Log4j2;
 import net.xeoh.plugins.base.annotations.PluginImplementation;
 import ugh.dl.ContentFile;
 import ugh.dl.DigitalDocument;
+import ugh.dl.DocStruct;
 import ugh.dl.FileSet;
 import ugh.dl.Fileformat;
 import ugh.exceptions.PreferencesException;
@@ -67,11 +77,29 @@ import ugh.exceptions.WriteException;
 @PluginImplementation
 @Log4j2
 public class RenameFilesBeforeRosettaStepPlugin implements IStepPluginVersion2 {
-    private static final String DEFAULT_FORMAT = "0000";
-    private static final String TEMP_FOLDER = "temp";
+    // the part of the process title after the first _
+    private static final String TITLE_TAIL = "{titletail}";
+    private static final String TEMP_FOLDER = PlanExecutor.TEMP_FOLDER;
+    private static final String RECOVERY_ROLLBACK = "rollback";
+    private static final String METS_UPDATE_STREAMING = "streaming";
+    private static final String RENAME_MODE_STAGING = "staging";
+    private static final String ORDER_METS = "mets";
+    private static final String NUMBERING_APPEND = "append";
+    private static final int ASYNC_THREADS = 2;
+    private static final String PLUGIN_TITLE = "intranda_step_rename_files_before_rosetta";
+    // the steps of this plugin that are in work, some of them may have been queued before the last restart of Goobi
+    private static final String STEPS_IN_WORK_FILTER = "schritte.Bearbeitungsstatus = 2 AND schritte.stepPlugin = '" + PLUGIN_TITLE + "'";
+
+    // runs the asynchronous renames of all processes, so that at most ASYNC_THREADS big renames compete for the storage
+    private static final ExecutorService ASYNC_EXECUTOR = Executors.newFixedThreadPool(ASYNC_THREADS, Thread.ofPlatform()
+            .daemon()
+            .name("rename-files-before-rosetta-async-", 1)
+            .factory());
+    // processes whose runs are queued or running in this Goobi instance
+    static final PendingRuns PENDING_RUNS = new PendingRuns();
 
     @Getter
-    private String title = "intranda_step_rename_files_before_rosetta";
+    private String title = PLUGIN_TITLE;
     @Getter
     private Step step;
 
@@ -82,10 +110,85 @@ public class RenameFilesBeforeRosettaStepPlugin implements IStepPluginVersion2 {
     private String newFileNamePrefix;
     // path as string of the media folder
     private String derivateFolder;
-    // format that will be used in the creation of new names
-    private NumberFormat format;
+    // listing of the media folder, made while creating the names map and reused for renaming its files
+    private FolderSnapshot derivateSnapshot;
+    // listings and plans of all folders of the current run, checked before any file is moved
+    private Preflight preflight;
+    // compiled template of the new names, null if the configured template is invalid
+    private NamingTemplate namingTemplate;
+    // suffix of the new names by folder name
+    private Map<String, String> folderSuffixes;
+    // number of folders that are renamed at the same time, 1 means one folder after another
+    private int folderThreads;
+    // true if every folder should be renamed in its own virtual thread, folderThreads is ignored then
+    private boolean useVirtualThreads;
+    // what to do with the files of an interrupted run: resume or rollback
+    private String recoveryMode;
+    // how the METS file is updated: ugh (read and write the whole document) or streaming (rewrite the file locations only)
+    private String metsUpdateMode;
+    // how the files are numbered: listing (order of the derivate folder) or mets (order of the pages in the physical structure map)
+    private String order;
+    // which files get new numbers: all (every file is numbered from 1) or append (files named by the template keep their numbers)
+    private String numbering;
+    // how the files of a folder are renamed: move (one file after another) or staging (hard links in a staging folder that replaces the folder)
+    private String renameMode;
+    // true if the image references inside of the ALTO and OCR XML files should be updated as well
+    private boolean rewriteOcrReferences;
+    // algorithm of the fixity checksums, e.g. MD5 or SHA-256, no checksums are computed if empty
+    private String checksumAlgorithm;
+    // name of the checksum manifest in the process folder, {algorithm} is replaced by the short name of the algorithm
+    private String checksumManifest;
+    // true if the checksums should be written to the CHECKSUM of the files in the METS file as well
+    private boolean checksumsToMets;
+    // true if a checksum in the METS file may be reused for a file with the recorded size that was not modified after the METS file
+    private boolean reuseMetsChecksums;
+    // checksums of the current run, computed while the folders are renamed
+    private FixityChecksums fixityChecksums;
+    // folders whose files are rewritten after the rename, their checksums are computed afterwards
+    private Set<String> deferredChecksumFolders = Set.of();
+    // write-ahead log of the moves of the current run
+    private RenameJournal renameJournal;
     private VariableReplacer variableReplacer;
-    private SubnodeConfiguration config;
+    // meta.xml of the process, parsed once for the VariableReplacer and the update of the file locations
+    private MetadataSession metadataSession;
+    // true if the journal should get one summary entry instead of one entry per folder
+    private boolean journalSummary;
+    // journal of the current run, its entries are saved as they are added
+    private RunJournal runJournal;
+    // timings and counters of the current run
+    private RenameStatistics statistics;
+    // true if run() should return WAIT at once and close the step when the files are renamed
+    private boolean asynchronous;
+    // files done and files to rename per folder of the current run
+    private RenameProgress progress;
+    // shared I/O budget if the process is renamed as part of a batch, null otherwise
+    @Setter
+    private RenameScheduler scheduler;
+    // last error of the current run, for the report of a batch
+    @Getter
+    private String errorMessage;
+    // true if the files are stored on S3, where every move is a copy followed by a delete
+    private boolean useS3;
+    // number of moves that are issued at the same time on S3
+    private int s3Concurrency;
+    // number of files that are copied at the same time when the temp folder of a folder is on another file system
+    private int crossDeviceThreads;
+    // true if the files in the subfolders of every folder are renamed as well, at any depth
+    private boolean recursive;
+    // number of threads that walk the subtrees of a folder in the recursive mode
+    private int treeThreads;
+    // true if the number of moves in flight per storage root follows the latency of the storage
+    private boolean adaptiveConcurrency;
+    // target of the 99th percentile of the move latency in milliseconds, only used with adaptive concurrency
+    private int targetLatency;
+    // highest number of moves in flight per storage root, only used with adaptive concurrency
+    private int maxConcurrency;
+    // executes the plans of the folders of the current run
+    private PlanExecutor planExecutor;
+    // the configuration block of the step, shared by all executions
+    private RenameSettings settings;
+    // names in the parent directories of the probed folders, each parent is listed once per run
+    private final Map<Path, Set<String>> directoryListings = new HashMap<>();
 
     private transient StorageProviderInterface storageProvider = StorageProvider.getInstance();
 
@@ -93,18 +196,50 @@ public class RenameFilesBeforeRosettaStepPlugin implements IStepPluginVersion2 {
     public void initialize(Step step, String returnPath) {
         this.returnPath = returnPath;
         this.step = step;
-        this.variableReplacer = createVariableReplacer(step.getProzess());
+        this.process = step.getProzess();
 
         // read parameters from correct block in configuration file
-        config = ConfigPlugins.getProjectAndStepConfig(title, step);
-
-        String formatFlag = config.getString("format");
-        if (StringUtils.isBlank(formatFlag)) {
-            formatFlag = DEFAULT_FORMAT;
+        settings = ConfigCache.getSettings(title, step);
+
+        adaptiveConcurrency = settings.adaptiveConcurrency();
+        targetLatency = settings.targetLatency();
+        maxConcurrency = settings.maxConcurrency();
+        folderThreads = settings.folderThreads();
+        useVirtualThreads = settings.useVirtualThreads();
+        recoveryMode = settings.recoveryMode();
+        metsUpdateMode = settings.metsUpdateMode();
+        renameMode = settings.renameMode();
+        order = settings.order();
+        numbering = settings.numbering();
+        rewriteOcrReferences = settings.rewriteOcrReferences();
+        checksumAlgorithm = settings.checksumAlgorithm();
+        checksumManifest = settings.checksumManifest();
+        checksumsToMets = settings.checksumsToMets();
+        reuseMetsChecksums = settings.reuseMetsChecksums();
+        journalSummary = settings.journalSummary();
+        asynchronous = settings.asynchronous();
+        useS3 = ConfigurationHelper.getInstance().useS3();
+        s3Concurrency = settings.s3Concurrency();
+        crossDeviceThreads = settings.crossDeviceThreads();
+        recursive = settings.recursive();
+        treeThreads = settings.treeThreads();
+        if (recursive && useS3) {
+            log.warn("The recursive mode is not available on S3, only the files directly in the folders are renamed");
+            recursive = false;
         }
-        format = new DecimalFormat(formatFlag);
 
-        String configuredMainImagesPath = config.getString("mainImageFolder", "{tifpath}");
+        log.info("rename_files_before_rosetta step plugin initialized");
+    }
+
+    /**
+     * read the METS file and resolve the parts of the configuration that contain variables. This is done when the run starts, so that a run that
+     * waits in the queue of the asynchronous mode or of a batch does not hold the parsed METS file of its process.
+     */
+    private void prepareRun() {
+        metadataSession = new MetadataSession(process);
+        variableReplacer = createVariableReplacer(process);
+
+        String configuredMainImagesPath = settings.mainImageFolder();
         if (StringUtils.isNotBlank(configuredMainImagesPath) && variableReplacer != null) {
             derivateFolder = this.variableReplacer.replace(configuredMainImagesPath);
         } else {
@@ -116,16 +251,58 @@ public class RenameFilesBeforeRosettaStepPlugin implements IStepPluginVersion2 {
             }
         }
 
-        process = this.step.getProzess();
         String processTitle = process.getTitel();
         newFileNamePrefix = processTitle.substring(processTitle.indexOf("_") + 1);
+        namingTemplate = compileNamingTemplate(settings.namingTemplate(), settings.format());
+        folderSuffixes = readFolderSuffixes();
+    }
 
-        log.info("rename_files_before_rosetta step plugin initialized");
+    /**
+     * compile the template of the new names once, so that rendering a name is cheap and safe for parallel use
+     * 
+     * @param template the configured template
+     * @param formatFlag the configured format, its zeros are the default number of digits of a counter
+     * @return the compiled template, or null if the template is invalid
+     */
+    private NamingTemplate compileNamingTemplate(String template, String formatFlag) {
+        int padding = StringUtils.countMatches(formatFlag, "0");
+        try {
+            return NamingTemplate.compile(template, padding, literal -> {
+                String replaced = literal.replace(TITLE_TAIL, newFileNamePrefix);
+                return variableReplacer == null ? replaced : variableReplacer.replace(replaced);
+            });
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid naming template in process {}: {}", process.getTitel(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * read the configured suffixes of the new names by folder
+     * 
+     * @return Map from folder names to suffixes
+     */
+    private Map<String, String> readFolderSuffixes() {
+        Map<String, String> suffixes = new HashMap<>();
+        for (RenameSettings.FolderSuffix folderSuffix : settings.folderSuffixes()) {
+            String folder = folderSuffix.folder();
+            if (variableReplacer != null) {
+                folder = variableReplacer.replace(folder);
+            }
+            suffixes.put(Path.of(folder).getFileName().toString(), folderSuffix.suffix());
+        }
+        return suffixes;
     }
 
-    private VariableReplacer createVariableReplacer(Process process) {
+    /**
+     * create the VariableReplacer of the run, it reads the METS file of the process
+     * 
+     * @param process the process of the run
+     * @return the VariableReplacer, or null if the METS file cannot be read; the configured folders are taken from the process then
+     */
+    VariableReplacer createVariableReplacer(Process process) {
         try {
-            Fileformat fileformat = process.readMetadataFile();
+            Fileformat fileformat = metadataSession.getFileformat();
             return new VariableReplacer(fileformat != null ? fileformat.getDigitalDocument() : null,
                     process.getRegelsatz().getPreferences(), process, step);
         } catch (ReadException | IOException | SwapException | PreferencesException e1) {
@@ -137,8 +314,232 @@ public class RenameFilesBeforeRosettaStepPlugin implements IStepPluginVersion2 {
 
     @Override
     public PluginReturnValue run() {
+        // a batch brings its own threads
+        if (!asynchronous || scheduler != null) {
+            return renameClaimed();
+        }
+        PENDING_RUNS.requeueOnce(RenameFilesBeforeRosettaStepPlugin::findStepsInWork, RenameFilesBeforeRosettaStepPlugin::processFolderOf,
+                RenameFilesBeforeRosettaStepPlugin::requeue);
+        Path processFolder;
+        try {
+            processFolder = processFolderOf(step);
+        } catch (IOException e) {
+            log.error("Error in step {} in process {}: the process directory cannot be found: {}", step.getTitel(), process.getTitel(), e.toString());
+            return PluginReturnValue.ERROR;
+        }
+        if (!PENDING_RUNS.claim(process.getId())) {
+            log.debug("The files of process {} are renamed in the background already", process.getTitel());
+            return PluginReturnValue.WAIT;
+        }
+        try {
+            PendingRuns.mark(processFolder, step.getId());
+        } catch (IOException e) {
+            // without the mark a restart of Goobi would leave the step in work forever
+            log.warn("Cannot mark the run of process {} as pending, the files are renamed at once: {}", process.getTitel(), e.toString());
+            try {
+                return renameAndRecord();
+            } finally {
+                PENDING_RUNS.release(process.getId());
+            }
+        }
+        queue(processFolder);
+        return PluginReturnValue.WAIT;
+    }
+
+    /**
+     * queue the claimed run on the shared background threads
+     * 
+     * @param processFolder the process folder, which holds the mark of the queued run
+     */
+    private void queue(Path processFolder) {
+        progress = new RenameProgress();
+        RenameMetrics.getInstance().started(process.getTitel(), progress);
+        ASYNC_EXECUTOR.execute(() -> renameAndCloseStep(processFolder));
+        log.debug("Renaming the files of process {} in the background", process.getTitel());
+    }
+
+    /**
+     * queue the run of a step again that was queued or running when Goobi was stopped, its process folder is still marked. An interrupted rename
+     * is resumed with its rename journal.
+     * 
+     * @param pendingStep the step of the run
+     */
+    private static void requeue(Step pendingStep) {
+        RenameFilesBeforeRosettaStepPlugin plugin = new RenameFilesBeforeRosettaStepPlugin();
+        plugin.initialize(pendingStep, null);
+        if (!PENDING_RUNS.claim(plugin.process.getId())) {
+            return;
+        }
+        log.info("Queueing the files of process {} again, its run was pending when Goobi was stopped", plugin.process.getTitel());
+        try {
+            plugin.queue(processFolderOf(pendingStep));
+        } catch (IOException | RuntimeException e) {
+            PENDING_RUNS.release(plugin.process.getId());
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the steps of this plugin that are in work
+     * @throws IOException if the database cannot be queried
+     */
+    private static List<Step> findStepsInWork() throws IOException {
+        try {
+            return StepManager.getSteps("schritte.SchritteID", STEPS_IN_WORK_FILTER);
+        } catch (DAOException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static Path processFolderOf(Step step) throws IOException {
+        try {
+            return Path.of(step.getProzess().getProcessDataDirectory());
+        } catch (SwapException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * rename the files on the background thread and close the step, or set it to error, when done
+     * 
+     * @param processFolder the process folder, its mark of the queued run is removed once the step is closed or set to error
+     */
+    private void renameAndCloseStep(Path processFolder) {
+        PluginReturnValue result = PluginReturnValue.ERROR;
+        try {
+            result = renameAndRecord();
+        } catch (RuntimeException e) {
+            log.error("Error in step {} in process {}: {}", step.getTitel(), process.getTitel(), e.toString(), e);
+        }
+        try {
+            closeStep(result);
+        } finally {
+            PendingRuns.unmark(processFolder);
+            PENDING_RUNS.release(process.getId());
+        }
+    }
+
+    /**
+     * close the step after a successful run, or set it to error
+     * 
+     * @param result the result of the run
+     */
+    void closeStep(PluginReturnValue result) {
+        if (result == PluginReturnValue.FINISH) {
+            CloseStepHelper.closeStep(step, null);
+            return;
+        }
+        step.setBearbeitungsstatusEnum(StepStatus.ERROR);
+        try {
+            StepManager.saveStep(step);
+        } catch (DAOException e) {
+            log.error("Error saving step {} of process {}: {}", step.getTitel(), process.getTitel(), e.toString());
+        }
+    }
+
+    /**
+     * rename the files at once, unless another run of the process is queued or running in this Goobi instance. A batch also leaves out processes
+     * whose asynchronous run is still pending from before a restart, it is queued again by the next asynchronous run.
+     * 
+     * @return FINISH if everything was renamed, ERROR otherwise
+     */
+    private PluginReturnValue renameClaimed() {
+        if (!PENDING_RUNS.claim(process.getId())) {
+            return refuseRun("the files are renamed by another run of the process");
+        }
+        try {
+            if (scheduler != null && PendingRuns.isMarked(processFolderOf(step))) {
+                return refuseRun("an asynchronous run of the process is still pending");
+            }
+            return renameAndRecord();
+        } catch (IOException e) {
+            return refuseRun("the process directory cannot be found: " + e.toString());
+        } finally {
+            PENDING_RUNS.release(process.getId());
+        }
+    }
+
+    private PluginReturnValue refuseRun(String reason) {
+        errorMessage = "Error renaming files: " + reason;
+        log.error("Error in step {} in process {}: {}", step.getTitel(), process.getTitel(), errorMessage);
+        return PluginReturnValue.ERROR;
+    }
+
+    /**
+     * rename the files and record the statistics and the journal entries of the run
+     * 
+     * @return FINISH if everything was renamed, ERROR otherwise
+     */
+    private PluginReturnValue renameAndRecord() {
+        prepareRun();
+        runJournal = new RunJournal(process.getId(), getTitle(), journalSummary);
+        statistics = new RenameStatistics();
+        errorMessage = null;
+        if (progress == null) {
+            progress = new RenameProgress();
+            RenameMetrics.getInstance().started(process.getTitel(), progress);
+        }
+        PluginReturnValue result = PluginReturnValue.ERROR;
+        try {
+            result = renameProcess();
+            return result;
+        } finally {
+            statistics.phase("metsParse", metadataSession.getParseMillis());
+            statistics.phase("metsWrite", metadataSession.getWriteMillis());
+            statistics.addBytes(metadataSession.getBytesTouched());
+            RenameMetrics.getInstance().record(process.getTitel(), statistics, result != PluginReturnValue.ERROR);
+            runJournal.summary(statistics.toSummary());
+            progress = null;
+            // the plugin may be kept after the run, e.g. by a batch
+            metadataSession = null;
+            variableReplacer = null;
+        }
+    }
+
+    /**
+     * rename the files of the process and update its METS file
+     * 
+     * @return FINISH if everything was renamed, ERROR otherwise
+     */
+    private PluginReturnValue renameProcess() {
+        String processFolder;
+        try {
+            processFolder = process.getProcessDataDirectory();
+            renameJournal = new RenameJournal(Path.of(processFolder, RenameJournal.FILE_NAME));
+        } catch (IOException | SwapException e) {
+            String message = String.format("Error renaming files: the process directory cannot be found: %s", e.toString());
+            log.error("Error in step {} in process {}: {}", this.step.getTitel(), this.process.getTitel(), message);
+            writeJournalEntry(message, LogType.ERROR);
+            return PluginReturnValue.ERROR;
+        }
+        if (renameJournal.exists()) {
+            try {
+                if (renameJournal.isStarted()) {
+                    return recoverInterruptedRun();
+                }
+                // the interrupted run died while writing the names map, before any file was moved
+                log.info("Discarding the incomplete rename journal {} of process {}, no file was moved", renameJournal.getFile(), process.getTitel());
+                renameJournal.delete();
+            } catch (IOException e) {
+                String message = String.format("Error reading the rename journal %s: %s", renameJournal.getFile(), e.toString());
+                log.error("Error in step {} in process {}: {}", this.step.getTitel(), this.process.getTitel(), message);
+                writeJournalEntry(message, LogType.ERROR);
+                return PluginReturnValue.ERROR;
+            }
+        }
+
+        if (namingTemplate == null) {
+            String message = "Error renaming files: the configured naming template is invalid";
+            log.error("Error in step {} in process {}: {}", this.step.getTitel(), this.process.getTitel(), message);
+            writeJournalEntry(message, LogType.ERROR);
+            return PluginReturnValue.ERROR;
+        }
+
         // 1. create a Map from old names to new names
+        long phaseStart = System.nanoTime();
+        directoryListings.clear();
         boolean validDerivateFolder = checkDerivateFolder();
+        statistics.phaseFinished("checkDerivateFolder", phaseStart);
         if (!validDerivateFolder) {
             String message = String.format(
                     "Error renaming files: Base images folder configured as %s, but no folder of that name found or accessible", this.derivateFolder);
@@ -146,7 +547,9 @@ public class RenameFilesBeforeRosettaStepPlugin implements IStepPluginVersion2 {
             writeJournalEntry(message, LogType.ERROR);
             return PluginReturnValue.ERROR;
         }
-        Map<String, String> namesMap = createNamesMap();
+        phaseStart = System.nanoTime();
+        NamesMap namesMap = createNamesMap();
+        statistics.phaseFinished("createNamesMap", phaseStart);
         if (namesMap.isEmpty()) {
             String message = String.format("Error renaming files: Base images folder configured as %s, but no image files found in that folder",
                     this.derivateFolder);
@@ -155,18 +558,83 @@ public class RenameFilesBeforeRosettaStepPlugin implements IStepPluginVersion2 {
             return PluginReturnValue.ERROR;
         }
 
+        phaseStart = System.nanoTime();
+        try {
+            preflight = runPreflight(namesMap);
+        } catch (IOException e) {
+            String message = String.format("Error renaming files: %s", e.toString());
+            log.error("Error in step {} in process {}: {}", this.step.getTitel(), this.process.getTitel(), message);
+            writeJournalEntry(message, LogType.ERROR);
+            return PluginReturnValue.ERROR;
+        }
+        statistics.phaseFinished("preflight", phaseStart);
+        for (String warning : preflight.getWarnings()) {
+            log.warn("Warning in step {} in process {}: {}", this.step.getTitel(), this.process.getTitel(), warning);
+            writeJournalEntry(warning, LogType.WARN);
+        }
+        if (!preflight.isValid()) {
+            String message = "Error renaming files, no file was moved: " + String.join("; ", preflight.getErrors());
+            log.error("Error in step {} in process {}: {}", this.step.getTitel(), this.process.getTitel(), message);
+            writeJournalEntry(message, LogType.ERROR);
+            return PluginReturnValue.ERROR;
+        }
+
+        try {
+            fixityChecksums = createFixityChecksums(namesMap::getNewLocation);
+        } catch (IOException | IllegalArgumentException e) {
+            String message = String.format("Error computing checksums: %s", e.getMessage());
+            log.error("Error in step {} in process {}: {}", this.step.getTitel(), this.process.getTitel(), message);
+            writeJournalEntry(message, LogType.ERROR);
+            return PluginReturnValue.ERROR;
+        }
+
+        renameJournal.begin(namesMap, preflight.getFolders(), TEMP_FOLDER, recursive);
         try {
-            // 2. rename files in each folder with help of this Map
+            // 2. rename files in each folder with help of this Map, the checksums of each folder are computed as soon as it is renamed, apart
+            // from the OCR folders whose files are rewritten afterwards
+            deferredChecksumFolders = rewriteOcrReferences ? getRewrittenOcrFolders() : Set.of();
+            phaseStart = System.nanoTime();
             renameFiles(namesMap);
+            statistics.phaseFinished("renameFiles", phaseStart);
+
+            if (rewriteOcrReferences) {
+                phaseStart = System.nanoTime();
+                updateOcrReferences(namesMap);
+                statistics.phaseFinished("rewriteOcrReferences", phaseStart);
+            }
+
+            if (fixityChecksums != null) {
+                phaseStart = System.nanoTime();
+                for (String folder : preflight.getFolders()) {
+                    if (deferredChecksumFolders.contains(folder)) {
+                        fixityChecksums.submitFolder(Path.of(folder));
+                    }
+                }
+                writeChecksumManifest();
+                statistics.phaseFinished("checksums", phaseStart);
+            }
             
             // 3. update the Mets file
-            updateMetsFile(namesMap);
-            
+            phaseStart = System.nanoTime();
+            scheduled(processFolder, () -> {
+                updateMetsFile(namesMap);
+                return null;
+            });
+            statistics.phaseFinished("updateMetsFile", phaseStart);
+            renameJournal.metsWritten();
+            renameJournal.delete();
+
         } catch(IOException e) {
+            closeRenameJournal();
             String message = String.format("Error renaming files: %s", e.toString());
             log.error("Error in step {} in process {}: {}", this.step.getTitel(), this.process.getTitel(), message);
             writeJournalEntry(message, LogType.ERROR);
             return PluginReturnValue.ERROR;
+        } finally {
+            if (fixityChecksums != null) {
+                fixityChecksums.close();
+                fixityChecksums = null;
+            }
         }
 
         log.info("rename_files_before_rosetta step plugin executed");
@@ -175,33 +643,271 @@ public class RenameFilesBeforeRosettaStepPlugin implements IStepPluginVersion2 {
     }
 
     /**
-     * create a Map from old names to new names
+     * continue or undo a run that was interrupted, depending on the configured recovery mode
      * 
-     * @return a Map from old names to new names
+     * @return FINISH if the interrupted run was completed, ERROR if it was rolled back or the recovery failed
      */
-    private Map<String, String> createNamesMap() {
-        Map<String, String> namesMap = new HashMap<>();
+    private PluginReturnValue recoverInterruptedRun() {
+        try {
+            if (RECOVERY_ROLLBACK.equals(recoveryMode)) {
+                NamesMap namesMap = NamesMap.of(renameJournal.rollback(storageProvider)).withFolderSuffixes(renameJournal.getFolderSuffixes());
+                if (rewriteOcrReferences) {
+                    updateOcrReferences(namesMap.inverse());
+                }
+                if (renameJournal.isMetsUpdated()) {
+                    updateMetsFile(namesMap.inverse());
+                }
+                renameJournal.delete();
+                String message = "Interrupted renaming was rolled back, all files have their old names again. Run the step again to rename them.";
+                log.info("{} in process {}", message, this.process.getTitel());
+                writeJournalEntry(message, LogType.ERROR);
+                return PluginReturnValue.ERROR;
+            }
 
-        // derivate folder is valid
-        List<Path> files = storageProvider.listFiles(derivateFolder);
-        boolean validFormat = checkFormat(files.size());
+            NamesMap namesMap = NamesMap.of(renameJournal.resume(storageProvider)).withFolderSuffixes(renameJournal.getFolderSuffixes());
+            boolean metsUpdated = renameJournal.isMetsUpdated();
+            // the OCR files are updated before the METS file, an interrupted update is simply repeated
+            if (!metsUpdated && rewriteOcrReferences) {
+                updateOcrReferences(namesMap);
+            }
+            // the locations of an updated METS file are already the new ones
+            fixityChecksums = createFixityChecksums(metsUpdated ? UnaryOperator.identity() : namesMap::getNewLocation);
+            if (fixityChecksums != null) {
+                submitChecksumsOfAllFolders();
+                writeChecksumManifest();
+            }
+            if (!metsUpdated) {
+                updateMetsFile(namesMap);
+            } else {
+                writeChecksumsToMets();
+            }
+            renameJournal.delete();
+
+        } catch (IOException | IllegalArgumentException e) {
+            String message = String.format("Error recovering interrupted renaming from %s: %s", renameJournal.getFile(), e.toString());
+            log.error("Error in step {} in process {}: {}", this.step.getTitel(), this.process.getTitel(), message);
+            writeJournalEntry(message, LogType.ERROR);
+            return PluginReturnValue.ERROR;
+        } finally {
+            if (fixityChecksums != null) {
+                fixityChecksums.close();
+                fixityChecksums = null;
+            }
+        }
+
+        log.info("rename_files_before_rosetta step plugin resumed an interrupted run");
+        writeJournalEntry("rename_files_before_rosetta step plugin resumed an interrupted run", LogType.INFO);
+        return PluginReturnValue.FINISH;
+    }
+
+    /**
+     * compute the checksums of all folders of the process, for a run that was resumed from the rename journal
+     * 
+     * @throws IOException if a folder cannot be listed
+     */
+    private void submitChecksumsOfAllFolders() throws IOException {
+        directoryListings.clear();
+        for (String folder : getFolderList()) {
+            if (!folderExists(folder)) {
+                continue;
+            }
+            fixityChecksums.submitFolder(Path.of(folder));
+            if (recursive) {
+                FolderTree.walkSubfolders(Path.of(folder), TEMP_FOLDER, treeThreads, snapshot -> fixityChecksums.submitFolder(snapshot.getFolder()));
+            }
+        }
+    }
+
+    private void closeRenameJournal() {
+        try {
+            renameJournal.close();
+        } catch (IOException e) {
+            log.error("Error closing the rename journal {}: {}", renameJournal.getFile(), e.toString());
+        }
+    }
+
+    /**
+     * create a Map from old names to new names
+     * 
+     * @return a Map from old names to new names, empty if the files cannot be renamed
+     */
+    private NamesMap createNamesMap() {
+        List<String> files;
+        if (ORDER_METS.equals(order)) {
+            derivateSnapshot = null;
+            files = readPageOrder();
+        } else {
+            // derivate folder is valid
+            try {
+                derivateSnapshot = readFolder(derivateFolder);
+            } catch (IOException e) {
+                log.error("Error listing the files of the derivate folder {}: {}", derivateFolder, e.toString());
+                return NamesMap.of(Map.of());
+            }
+            files = derivateSnapshot.getFileNames();
+        }
+        if (files.isEmpty()) {
+            return NamesMap.of(Map.of());
+        }
+        if (NUMBERING_APPEND.equals(numbering)) {
+            return createAppendedNamesMap(files);
+        }
+        boolean validFormat = namingTemplate.fits(files.size());
         log.debug("format is {}valid", validFormat ? "" : "in");
         if (!validFormat) {
             log.error("The configured format does not have enough digits. Please adjust it.");
-            return namesMap;
+            return NamesMap.of(Map.of());
         }
 
         // format is also valid
-        for (int i = 0; i < files.size(); ++i) {
-            Path file = files.get(i);
-            String fileName = file.getFileName().toString();
-            String oldName = fileName.substring(0, fileName.lastIndexOf("."));
-            // get new name based on the order of this file
-            String newName = createNewName(i + 1);
-            namesMap.put(oldName, newName);
+        return NamesMap.create(files, namingTemplate).withFolderSuffixes(folderSuffixes);
+    }
+
+    /**
+     * create a Map from old names to new names in which the files that were already renamed keep their numbers. Those files map to their own names,
+     * so they are neither moved nor touched in the METS file, and only the new files and the ones out of sequence are renamed.
+     * 
+     * @param files names of the files in the order in which they should be numbered
+     * @return a Map from old names to new names, empty if the files cannot be renamed
+     */
+    private NamesMap createAppendedNamesMap(List<String> files) {
+        int[] numbers = namingTemplate.appendNumbers(files);
+        int highest = 0;
+        int kept = 0;
+        for (int i = 0; i < numbers.length; ++i) {
+            highest = Math.max(highest, numbers[i]);
+            if (numbers[i] > 0 && numbers[i] == namingTemplate.parse(NamesMap.stem(files.get(i)))) {
+                kept++;
+            }
+        }
+        if (!namingTemplate.fits(highest)) {
+            log.error("The configured format does not have enough digits for {} files. Please adjust it.", highest);
+            return NamesMap.of(Map.of());
+        }
+        log.debug("{} of {} files in process {} keep their numbers", kept, files.size(), process.getTitel());
+        return NamesMap.create(files, numbers, namingTemplate).withFolderSuffixes(folderSuffixes);
+    }
+
+    /**
+     * get the files of the derivate folder in the order of the pages in the physical structure map of the METS file. Every page is looked at once,
+     * the first file of a page in the derivate folder counts for it and a file that belongs to several pages is counted for the first one.
+     * 
+     * @return names of the files in the order of their pages, empty if the METS file cannot be read
+     */
+    private List<String> readPageOrder() {
+        String folderName = Path.of(derivateFolder).getFileName().toString();
+        // index from the name of a file without its suffix to the file, in the order of the pages
+        Map<String, String> filesByStem = new LinkedHashMap<>();
+        try {
+            DocStruct physical = metadataSession.getFileformat().getDigitalDocument().getPhysicalDocStruct();
+            List<DocStruct> pages = physical == null ? null : physical.getAllChildren();
+            if (pages == null) {
+                log.error("The METS file of process {} has no pages", process.getTitel());
+                return List.of();
+            }
+            for (DocStruct page : pages) {
+                List<ContentFile> contentFiles = page.getAllContentFiles();
+                if (contentFiles == null) {
+                    continue;
+                }
+                for (ContentFile contentFile : contentFiles) {
+                    String location = contentFile.getLocation();
+                    int nameStart = location.lastIndexOf('/') + 1;
+                    int folderStart = location.lastIndexOf('/', nameStart - 2) + 1;
+                    if (nameStart < 2 || !location.startsWith(folderName + "/", folderStart)) {
+                        continue;
+                    }
+                    String fileName = location.substring(nameStart);
+                    int suffixStart = fileName.lastIndexOf('.');
+                    if (filesByStem.putIfAbsent(suffixStart < 0 ? fileName : fileName.substring(0, suffixStart), fileName) == null) {
+                        break;
+                    }
+                }
+            }
+        } catch (ReadException | IOException | SwapException | PreferencesException e) {
+            log.error("Error reading the pages of process {}: {}", process.getTitel(), e.toString());
+            return List.of();
         }
+        log.debug("{} pages of process {} reference files in {}", filesByStem.size(), process.getTitel(), derivateFolder);
+        return new ArrayList<>(filesByStem.values());
+    }
 
-        return namesMap;
+    /**
+     * list all folders once and check their files, before anything is moved
+     * 
+     * @param namesMap mapping from old names to new names
+     * @return the result of the check, with the plans of all folders if there are no errors
+     * @throws IOException if a folder cannot be listed
+     */
+    private Preflight runPreflight(NamesMap namesMap) throws IOException {
+        Preflight check = new Preflight(namesMap, TEMP_FOLDER);
+        for (String folder : getFolderList()) {
+            if (folder.equals(derivateFolder)) {
+                if (derivateSnapshot == null) {
+                    // the names were taken from the METS file, the folder was not listed yet
+                    derivateSnapshot = readFolder(folder);
+                }
+                check.checkDerivateFolder(folder, derivateSnapshot);
+            } else if (folderExists(folder)) {
+                check.checkFolder(folder, readFolder(folder));
+            } else {
+                check.folderMissing(folder);
+                continue;
+            }
+            if (recursive) {
+                String folderName = Path.of(folder).getFileName().toString();
+                FolderTree.walkSubfolders(Path.of(folder), TEMP_FOLDER, treeThreads, snapshot -> check.checkSubfolder(snapshot, folderName));
+            }
+        }
+        return check;
+    }
+
+    /**
+     * list the files of a folder once. On a local file system the folder is streamed directly, on S3 the StorageProvider is asked instead.
+     * 
+     * @param folder path as string of the folder
+     * @return the snapshot of the folder
+     * @throws IOException if the folder cannot be read
+     */
+    private FolderSnapshot readFolder(String folder) throws IOException {
+        Path folderPath = Path.of(folder);
+        if (useS3) {
+            Path tempFolderPath = folderPath.resolve(TEMP_FOLDER);
+            List<Path> tempFiles = storageProvider.isFileExists(tempFolderPath) ? storageProvider.listFiles(tempFolderPath.toString()) : List.of();
+            return FolderSnapshot.of(folderPath, storageProvider.listFiles(folder), TEMP_FOLDER, tempFiles);
+        }
+        if (recursive) {
+            // the subfolders are walked on their own
+            return FolderSnapshot.read(folderPath, TEMP_FOLDER, subfolder -> {
+            });
+        }
+        return FolderSnapshot.read(folderPath, TEMP_FOLDER);
+    }
+
+    /**
+     * check if a folder exists by looking it up in the listing of its parent directory. The ocr folders and the image folders share their parents, so
+     * a handful of listings replace one probe per folder. On S3, or if the parent cannot be listed, the StorageProvider is asked directly.
+     * 
+     * @param folder path as string of the folder
+     * @return true if the folder exists
+     */
+    private boolean folderExists(String folder) {
+        Path folderPath = Path.of(folder);
+        Path parent = folderPath.getParent();
+        if (useS3 || parent == null || folderPath.getFileName() == null) {
+            return storageProvider.isFileExists(folderPath);
+        }
+        Set<String> names = directoryListings.computeIfAbsent(parent, this::listNames);
+        return names == null ? storageProvider.isFileExists(folderPath) : names.contains(folderPath.getFileName().toString());
+    }
+
+    private Set<String> listNames(Path directory) {
+        try (Stream<Path> entries = Files.list(directory)) {
+            return entries.map(entry -> entry.getFileName().toString()).collect(Collectors.toSet());
+        } catch (IOException e) {
+            log.debug("Could not list {}: {}", directory, e.toString());
+            return null;
+        }
     }
 
     /**
@@ -213,57 +919,201 @@ public class RenameFilesBeforeRosettaStepPlugin implements IStepPluginVersion2 {
         try {
             String masterFolder = process.getImagesOrigDirectory(false);
 
-            return !masterFolder.equals(derivateFolder) && storageProvider.isFileExists(Path.of(derivateFolder));
+            return !masterFolder.equals(derivateFolder) && folderExists(derivateFolder);
 
         } catch (IOException | SwapException | DAOException e) {
-            log.error("Errors Happened during the validity check of the derivate folder");
-            e.printStackTrace();
+            log.error("Error checking the derivate folder of process {}: {}", process.getTitel(), e.toString(), e);
             return false;
         }
     }
 
     /**
-     * checks if the configured format has enough digits for keeping at most n files' names of equal lengths
+     * rename all files that are relevant
      * 
-     * @param n the total number of files that should be renamed
-     * @return true if the configured format has enough digits, false otherwise
+     * @param namesMap mapping from old names to new names
+     * @throws IOException if the files of any folder could not be renamed
      */
-    private boolean checkFormat(int n) {
-        String format_0 = format.format(0); // NOSONAR
-        String format_n = format.format(n); // NOSONAR
+    private void renameFiles(NamesMap namesMap) throws IOException {
+        List<String> folders = preflight.getFolders();
+        planExecutor = new PlanExecutor(storageProvider, renameJournal, statistics, progress);
+        planExecutor.setUseS3(useS3);
+        planExecutor.setCrossDeviceThreads(crossDeviceThreads);
+        if (adaptiveConcurrency) {
+            planExecutor.setAdaptiveConcurrency(targetLatency, maxConcurrency);
+        }
 
-        return format_0.length() == format_n.length();
+        // on S3 every move is a server side copy, so the chains of a folder are copied at the same time; with adaptive concurrency the limiter of
+        // the storage root decides how many of the chains really move a file at the same time
+        int chainThreads = useS3 ? s3Concurrency : 1;
+        if (adaptiveConcurrency) {
+            chainThreads = maxConcurrency;
+        }
+        if (chainThreads > 1) {
+            ExecutorService chainExecutor = Executors.newFixedThreadPool(chainThreads);
+            planExecutor.setChainExecutor(chainExecutor);
+            try {
+                renameFolders(folders, namesMap);
+            } finally {
+                chainExecutor.shutdownNow();
+            }
+        } else {
+            renameFolders(folders, namesMap);
+        }
     }
 
     /**
-     * create a new name given the order of the file
+     * rename the files of the given folders, either one folder after another or in parallel
      * 
-     * @param order the order of the file among all files
-     * @return {newFileNamePrefix}_{the formated order}
+     * @param folders list of folders whose files should be renamed
+     * @param namesMap mapping from old names to new names
+     * @throws IOException if the files of any folder could not be renamed
      */
-    private String createNewName(int order) {
-        String formatedNumber = format.format(order);
-        String newName = newFileNamePrefix + "_" + formatedNumber;
+    private void renameFolders(List<String> folders, NamesMap namesMap) throws IOException {
+
+        if (folders.size() > 1 && (useVirtualThreads || folderThreads > 1)) {
+            renameFoldersInParallel(folders, namesMap);
+            return;
+        }
+
+        // rename files in each folder
+        for (String folder : folders) {
+            FolderResult result = scheduled(folder, () -> renameFolder(folder, namesMap));
+            runJournal.folderRenamed(folder, result.filesRenamed());
+        }
 
-        return newName;
     }
 
     /**
-     * rename all files that are relevant
+     * rename the files of all folders at the same time. The folders are disjoint, hence the only thing they share is the read-only namesMap. All
+     * folders are processed even if some of them fail, the errors are collected and reported together afterwards.
      * 
-     * @param namesMap Map from old names to new names
-     * @return true if all relevant files are successfully renamed, false otherwise
-     * @throws IOException 
+     * @param folders list of folders whose files should be renamed
+     * @param namesMap mapping from old names to new names
+     * @throws IOException if the files of at least one folder could not be renamed
      */
-    private void renameFiles(Map<String, String> namesMap) throws IOException {
-        List<String> folders = getFolderList();
+    private void renameFoldersInParallel(List<String> folders, NamesMap namesMap) throws IOException {
+        List<FolderResult> results = new ArrayList<>();
+        ExecutorService executor = useVirtualThreads ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(Math.min(folderThreads, folders.size()));
+        try {
+            List<Future<FolderResult>> futures = new ArrayList<>();
+            for (String folder : folders) {
+                futures.add(executor.submit(() -> scheduled(folder, () -> renameFolder(folder, namesMap))));
+            }
+            for (int i = 0; i < folders.size(); ++i) {
+                results.add(waitForFolder(folders.get(i), futures.get(i)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
 
-        // rename files in each folder
-        for (String folder : folders) {
-            int filesRenamed = renameFilesInFolder(folder, namesMap);
-            writeJournalEntry(String.format("renamed %s files in %s", filesRenamed, folder), LogType.DEBUG);
+        IOException error = null;
+        for (FolderResult result : results) {
+            if (result.error() == null) {
+                runJournal.folderRenamed(result.folder(), result.filesRenamed());
+            } else {
+                log.error("Error renaming files in folder {}: {}", result.folder(), result.error().toString());
+                if (error == null) {
+                    error = new IOException("Error renaming files in folder " + result.folder() + ": " + result.error().getMessage(), result.error());
+                } else {
+                    error.addSuppressed(result.error());
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
         }
+    }
 
+    private FolderResult waitForFolder(String folder, Future<FolderResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while renaming files in folder " + folder, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            IOException error = cause instanceof IOException ioe ? ioe : new IOException(cause);
+            return new FolderResult(folder, 0, error);
+        }
+    }
+
+    /**
+     * rename all files in the given folder and record its statistics
+     * 
+     * @param folder path as string of the folder
+     * @param allNames mapping from old names to new names for all folders
+     * @return the result of the folder
+     * @throws IOException
+     */
+    private FolderResult renameFolder(String folder, NamesMap allNames) throws IOException {
+        long start = System.currentTimeMillis();
+        NamesMap namesMap = allNames.forFolder(Path.of(folder).getFileName().toString());
+        if (RENAME_MODE_STAGING.equals(renameMode) && !useS3) {
+            List<String> fileNames = FolderSwap.listSwappableFiles(Path.of(folder));
+            if (fileNames != null) {
+                int filesRenamed = swapFolder(folder, fileNames, namesMap);
+                statistics.folderRenamed(new RenameStatistics.FolderStatistics(folder, filesRenamed, 0, 0, System.currentTimeMillis() - start));
+                submitChecksums(folder);
+                return new FolderResult(folder, filesRenamed, null);
+            }
+            log.debug("Folder {} contains subfolders or links or is a mount point, its files are moved one by one", folder);
+        }
+        RenamePlan plan = renameFilesInFolder(folder);
+        statistics.folderRenamed(new RenameStatistics.FolderStatistics(folder, plan.getFilesRenamed(), plan.getCollisions(), plan.getTempMoves(),
+                System.currentTimeMillis() - start));
+        submitChecksums(folder);
+        int filesRenamed = plan.getFilesRenamed();
+        if (recursive) {
+            filesRenamed += renameSubfolders(folder, namesMap);
+        }
+        log.debug("Progress of process {}: {}", process.getTitel(), progress);
+        return new FolderResult(folder, filesRenamed, null);
+    }
+
+    /**
+     * compute the checksums of a renamed folder in the background, unless its files are rewritten afterwards
+     * 
+     * @param folder path as string of the folder
+     * @throws IOException if the folder cannot be listed
+     */
+    private void submitChecksums(String folder) throws IOException {
+        if (fixityChecksums != null && !deferredChecksumFolders.contains(folder)) {
+            fixityChecksums.submitFolder(Path.of(folder));
+        }
+    }
+
+    /**
+     * rename the files in all subfolders of a folder, at any depth. Each subfolder is listed and planned when the walk reaches it, its plan was
+     * checked by the preflight already. The subfolders of a folder are recorded as one entry of the statistics and count towards its progress.
+     * 
+     * @param folder path as string of the folder
+     * @param namesMap mapping from old names to new names for the folder
+     * @return the number of files that got a new name
+     * @throws IOException if the files of any subfolder could not be renamed
+     */
+    private int renameSubfolders(String folder, NamesMap namesMap) throws IOException {
+        long start = System.currentTimeMillis();
+        String progressFolder = Path.of(folder).getFileName().toString();
+        AtomicInteger filesRenamed = new AtomicInteger();
+        AtomicInteger collisions = new AtomicInteger();
+        AtomicInteger tempMoves = new AtomicInteger();
+        FolderTree.walkSubfolders(Path.of(folder), TEMP_FOLDER, treeThreads, snapshot -> {
+            RenamePlan plan = RenamePlan.create(snapshot.getFileNames(), namesMap::getNewFileName, TEMP_FOLDER);
+            if (!plan.isEmpty()) {
+                progress.filesAdded(progressFolder, plan.getFilesRenamed());
+                planExecutor.execute(snapshot.getFolder().toString(), snapshot, plan, progressFolder);
+                filesRenamed.addAndGet(plan.getFilesRenamed());
+                collisions.addAndGet(plan.getCollisions());
+                tempMoves.addAndGet(plan.getTempMoves());
+            }
+            if (fixityChecksums != null) {
+                fixityChecksums.submitFolder(snapshot.getFolder());
+            }
+        });
+        statistics.folderRenamed(new RenameStatistics.FolderStatistics(folder + "/**", filesRenamed.get(), collisions.get(), tempMoves.get(),
+                System.currentTimeMillis() - start));
+        return filesRenamed.get();
     }
 
     /**
@@ -280,8 +1130,7 @@ public class RenameFilesBeforeRosettaStepPlugin implements IStepPluginVersion2 {
             String txtFolder = process.getOcrTxtDirectory();
             String xmlFolder = process.getOcrXmlDirectory();
             
-            List<String> additionalFolders = config.getList("additionalFolder").stream()
-                    .filter(String.class::isInstance).map(String.class::cast)
+            List<String> additionalFolders = settings.additionalFolders().stream()
                     .map(f -> this.variableReplacer == null ? f : this.variableReplacer.replace(f)).collect(Collectors.toList());
             
 
@@ -289,22 +1138,22 @@ public class RenameFilesBeforeRosettaStepPlugin implements IStepPluginVersion2 {
             log.debug("add derivateFolder: " + derivateFolder);
             folders.add(derivateFolder);
 
-            if (storageProvider.isFileExists(Path.of(altoFolder))) {
+            if (folderExists(altoFolder)) {
                 log.debug("add altoFolder: " + altoFolder);
                 folders.add(altoFolder);
             }
 
-            if (storageProvider.isFileExists(Path.of(pdfFolder))) {
+            if (folderExists(pdfFolder)) {
                 log.debug("add pdfFolder: " + pdfFolder);
                 folders.add(pdfFolder);
             }
 
-            if (storageProvider.isFileExists(Path.of(txtFolder))) {
+            if (folderExists(txtFolder)) {
                 log.debug("add txtFolder: " + txtFolder);
                 folders.add(txtFolder);
             }
 
-            if (storageProvider.isFileExists(Path.of(xmlFolder))) {
+            if (folderExists(xmlFolder)) {
                 log.debug("add xmlFolder: " + xmlFolder);
                 folders.add(xmlFolder);
             }
@@ -322,131 +1171,291 @@ public class RenameFilesBeforeRosettaStepPlugin implements IStepPluginVersion2 {
     }
 
     /**
-     * rename all files in the given folder
+     * rename all files in the given folder with the plan of the preflight check
      * 
      * @param folder path as string of the folder
-     * @param namesMap Map from old names to new names
-     * @return true if all files in the given folder are successfully renamed, false otherwise
+     * @return the executed plan
      * @throws IOException 
      */
-    private int renameFilesInFolder(String folder, Map<String, String> namesMap) throws IOException {
-        List<Path> files = storageProvider.listFiles(folder);
-        int filesRenamed = 0;
-        for (Path file : files) {
-            // get new filename 
-            String oldFileName = file.getFileName().toString();
-            String newFileName = getNewFileName(oldFileName, namesMap);
-
-            tryRenameFile(file, newFileName);
-            filesRenamed++;
+    private RenamePlan renameFilesInFolder(String folder) throws IOException {
+        Preflight.FolderCheck check = preflight.getFolder(folder);
+        FolderSnapshot snapshot = check.snapshot();
+        RenamePlan plan = check.plan();
+        if (plan.isEmpty()) {
+            // e.g. the step is run again after a failed ingest, all files already have their new names
+            log.debug("All files in {} already have their new names", folder);
+            return plan;
         }
+        log.debug("{} files to rename in {}, {} cycles need the temp folder", plan.getFilesRenamed(), folder, plan.getCycles());
+        String progressFolder = snapshot.getFolder().getFileName().toString();
+        progress.folderStarted(progressFolder, plan.getFilesRenamed());
+        planExecutor.execute(folder, snapshot, plan, progressFolder);
+        return plan;
+    }
 
-        // move all the files from the temp folder back again
-        moveFilesFromTempBack(folder);
+    /**
+     * rename all files in the given folder by linking them under their new names into a staging folder, which then replaces the folder
+     * 
+     * @param folder path as string of the folder
+     * @param fileNames names of all files of the folder
+     * @param namesMap mapping from old names to new names
+     * @return the number of files that got a new name
+     * @throws IOException
+     */
+    private int swapFolder(String folder, List<String> fileNames, NamesMap namesMap) throws IOException {
+        int filesToRename = (int) fileNames.stream().filter(fileName -> !namesMap.getNewFileName(fileName).equals(fileName)).count();
+        if (filesToRename == 0) {
+            log.debug("All files in {} already have their new names", folder);
+            return 0;
+        }
+        String folderName = Path.of(folder).getFileName().toString();
+        progress.folderStarted(folderName, filesToRename);
+        FolderSwap swap = new FolderSwap(Path.of(folder));
+        int swapId = renameJournal.swapPlanned(folder);
+        int filesRenamed = swap.stage(fileNames, namesMap::getNewFileName);
+        swap.swap();
+        renameJournal.swapped(swapId);
+        progress.filesDone(folderName, filesRenamed);
+        swap.cleanUp();
+        log.debug("{} files renamed in {} by swapping it with its staging folder", filesRenamed, folder);
         return filesRenamed;
     }
 
     /**
-     * get the new file name given the old one
+     * update the references to the images inside of the ALTO and OCR XML files, all files at the same time. A reference is only changed if it points
+     * to the image with the previous name of the OCR file itself, so an interrupted update can be repeated without renaming anything twice.
      * 
-     * @param oldFileName the old file name, including the file suffix
-     * @param namesMap Map from old names to new names
-     * @return the new file name including the file suffix
+     * @param renamed mapping from the previous names to the current names
+     * @throws IOException if any OCR file could not be updated
      */
-    private String getNewFileName(String oldFileName, Map<String, String> namesMap) {
-        int suffixIndex = oldFileName.lastIndexOf(".");
-        String suffix = oldFileName.substring(suffixIndex);
-        String oldName = oldFileName.substring(0, suffixIndex);
-        if(namesMap.containsKey(oldName)) {            
-            return namesMap.get(oldName).concat(suffix);
-        } else {
-            return oldFileName;
+    private void updateOcrReferences(NamesMap renamed) throws IOException {
+        if (useS3) {
+            log.warn("Image references in OCR files of process {} are not updated, this is only supported on local storage", process.getTitel());
+            return;
+        }
+        NamesMap previousNames = renamed.inverse();
+        NamesMap imageNames = renamed.forFolder(Path.of(derivateFolder).getFileName().toString());
+        ThreadLocal<OcrReferenceRewriter> rewriters = ThreadLocal.withInitial(OcrReferenceRewriter::new);
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for (String ocrFolder : getRewrittenOcrFolders()) {
+                Path folderPath = Path.of(ocrFolder);
+                if (!Files.isDirectory(folderPath)) {
+                    continue;
+                }
+                NamesMap previousOcrNames = previousNames.forFolder(folderPath.getFileName().toString());
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(folderPath, "*.xml")) {
+                    for (Path file : files) {
+                        String previousName = previousOcrNames.getNewFileName(file.getFileName().toString());
+                        if (previousName.equals(file.getFileName().toString())) {
+                            continue;
+                        }
+                        String previousStem = previousName.substring(0, previousName.lastIndexOf('.'));
+                        futures.add(executor.submit(() -> {
+                            statistics.addBytes(Files.size(file));
+                            return rewriters.get().rewrite(file, reference -> getNewReference(reference, previousStem, imageNames));
+                        }));
+                    }
+                }
+            }
+            int changed = 0;
+            IOException error = null;
+            for (Future<Integer> future : futures) {
+                try {
+                    changed += future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while updating the OCR files of process " + process.getTitel(), e);
+                } catch (ExecutionException e) {
+                    IOException cause = e.getCause() instanceof IOException ioe ? ioe : new IOException(e.getCause());
+                    if (error == null) {
+                        error = cause;
+                    } else {
+                        error.addSuppressed(cause);
+                    }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+            log.debug("{} image references updated in {} OCR files of process {}", changed, futures.size(), process.getTitel());
+        } finally {
+            executor.shutdownNow();
         }
     }
 
     /**
-     * try to rename a file
-     * 
-     * @param filePath the Path of the file which is to be renamed
-     * @param newFileName the new name of the file
+     * @return the folders whose OCR files get their image references updated, empty on S3
      * @throws IOException
      */
-    private void tryRenameFile(Path filePath, String newFileName) throws IOException {
-        Path targetPath = filePath.getParent().resolve(newFileName);
-        if (storageProvider.isFileExists(targetPath)) {
-            log.debug("targetPath is occupied: " + targetPath.toString());
-            log.debug("Moving the file " + newFileName + " to temp folder for the moment instead.");
-            // move files to a temp folder
-            moveFileToTempFolder(filePath, newFileName);
-        } else {
-            storageProvider.move(filePath, targetPath);
+    private Set<String> getRewrittenOcrFolders() throws IOException {
+        if (useS3) {
+            return Set.of();
+        }
+        try {
+            return new LinkedHashSet<>(List.of(process.getOcrAltoDirectory(), process.getOcrXmlDirectory()));
+        } catch (SwapException e) {
+            throw new IOException(e);
         }
     }
 
     /**
-     * move files whose new names have conflicts with other files to a temp folder for the moment
+     * get the new image reference of an OCR file
      * 
-     * @param filePath the Path of the file which is to be moved
-     * @param newFileName the new name of this file
-     * @throws IOException
+     * @param reference the reference, a file name or a path with / or \ as separator
+     * @param previousStem previous name of the OCR file without its suffix, only a reference to the image with this name is changed
+     * @param imageNames mapping from the previous to the current names of the images
+     * @return the new reference, or the old one if it points to another image or is already up to date
      */
-    private void moveFileToTempFolder(Path filePath, String newFileName) throws IOException {
-        Path tempFolderPath = Path.of(filePath.getParent().toString(), TEMP_FOLDER);
-        if (!storageProvider.isFileExists(tempFolderPath)) {
-            storageProvider.createDirectories(tempFolderPath);
+    static String getNewReference(String reference, String previousStem, NamesMap imageNames) {
+        int nameStart = Math.max(reference.lastIndexOf('/'), reference.lastIndexOf('\\')) + 1;
+        int suffixStart = reference.lastIndexOf('.');
+        if (suffixStart < nameStart) {
+            suffixStart = reference.length();
         }
-        storageProvider.move(filePath, tempFolderPath.resolve(newFileName));
+        if (suffixStart - nameStart != previousStem.length() || !reference.startsWith(previousStem, nameStart)) {
+            return reference;
+        }
+        return reference.substring(0, nameStart).concat(imageNames.getNewFileName(reference.substring(nameStart)));
     }
 
     /**
-     * move files back from the temp folder
+     * prepare the checksums of the current run, if checksums are configured
      * 
-     * @param folder the path as string of the folder whose files have just been renamed
-     * @throws IOException
+     * @param newLocations mapping from the locations in the METS file to the new ones, to find the checksums of the METS file under the new names
+     * @return the checksums of the run, or null if no checksums should be computed
+     * @throws IOException if the METS file could not be read
+     * @throws IllegalArgumentException if the configured algorithm is unknown
      */
-    private void moveFilesFromTempBack(String folder) throws IOException {
-        Path tempFolderPath = Path.of(folder, TEMP_FOLDER);
-        if (storageProvider.isFileExists(tempFolderPath)) {
-            log.debug("Moving files back from the temp folder: " + tempFolderPath.toString());
-            List<Path> files = storageProvider.listFiles(tempFolderPath.toString());
-            for (Path file : files) {
-                storageProvider.move(file, Path.of(folder, file.getFileName().toString()));
-            }
-            storageProvider.deleteDir(tempFolderPath);
-            log.debug("Temp folder deleted: " + tempFolderPath.toString());
+    private FixityChecksums createFixityChecksums(UnaryOperator<String> newLocations) throws IOException {
+        if (StringUtils.isBlank(checksumAlgorithm)) {
+            return null;
+        }
+        if (useS3) {
+            log.warn("Checksums cannot be computed on S3, no manifest is written for process {}", process.getTitel());
+            return null;
+        }
+        FixityChecksums checksums = new FixityChecksums(checksumAlgorithm, Runtime.getRuntime().availableProcessors(), reuseMetsChecksums);
+        try {
+            checksums.readMets(Path.of(process.getMetadataFilePath()), newLocations);
+        } catch (IOException | SwapException e) {
+            checksums.close();
+            throw new IOException(e.getMessage(), e);
+        }
+        return checksums;
+    }
+
+    /**
+     * wait for the checksums of all renamed folders and write them to the manifest in the process folder
+     * 
+     * @throws IOException if a file could not be read or the manifest could not be written
+     */
+    private void writeChecksumManifest() throws IOException {
+        fixityChecksums.await();
+        statistics.addBytes(fixityChecksums.getBytesRead());
+        try {
+            Path processFolder = Path.of(process.getProcessDataDirectory());
+            String algorithm = fixityChecksums.getAlgorithm().toLowerCase().replace("-", "");
+            Path manifest = processFolder.resolve(checksumManifest.replace("{algorithm}", algorithm));
+            fixityChecksums.writeManifest(manifest, processFolder);
+            log.debug("Checksum manifest {} written, {} checksums reused from the METS file", manifest, fixityChecksums.getReused());
+        } catch (SwapException e) {
+            throw new IOException("Error writing the checksum manifest of process " + process.getTitel() + ": " + e.toString(), e);
         }
     }
 
     /**
-     * update information of ContentFiles' locations in the METS file
+     * update information of ContentFiles' locations in the METS file. The METS file is only written if at least one location has changed.
      * 
-     * @param namesMap Map from old names to new names
-     * @return true if the METS file is updated successfully, false if any error should occur
+     * @param namesMap mapping from old names to new names
+     * @throws IOException if the METS file could not be read or written
      */
-    private void updateMetsFile(Map<String, String> namesMap) throws IOException {
+    private void updateMetsFile(NamesMap namesMap) throws IOException {
+        if (METS_UPDATE_STREAMING.equals(metsUpdateMode)) {
+            updateMetsFileStreaming(namesMap);
+            return;
+        }
         try {
-            Fileformat fileformat = process.readMetadataFile();
+            Fileformat fileformat = metadataSession.getFileformat();
             DigitalDocument dd = fileformat.getDigitalDocument();
             FileSet fileSet = dd.getFileSet();
             List<ContentFile> filesList = fileSet.getAllFiles();
+            int locationsChanged = 0;
             for (ContentFile file : filesList) {
                 String oldLocation = file.getLocation();
-                int fileNameStartIndex = oldLocation.lastIndexOf("/") + 1;
-                String locationPrefix = oldLocation.substring(0, fileNameStartIndex);
-
-                String oldFileName = oldLocation.substring(fileNameStartIndex);
-                String newFileName = getNewFileName(oldFileName, namesMap);
-                String newLocation = locationPrefix.concat(newFileName);
-                file.setLocation(newLocation);
+                String newLocation = namesMap.getNewLocation(oldLocation);
+                if (!newLocation.equals(oldLocation)) {
+                    file.setLocation(newLocation);
+                    locationsChanged++;
+                }
             }
 
-            process.writeMetadataFile(fileformat);
+            if (locationsChanged == 0) {
+                log.debug("All file locations in the METS file of process {} are up to date", process.getTitel());
+            } else {
+                metadataSession.write();
+            }
+            writeChecksumsToMets();
 
         } catch (ReadException | IOException | SwapException | PreferencesException | WriteException e) {
             throw new IOException("Error writing updated filenames to meta.xml of process " + process.getTitel() + ": " + e.toString(), e);
         }
     }
 
+    /**
+     * write the checksums of the current run to the files of the METS file, if that is configured
+     * 
+     * @throws IOException if the METS file could not be read or written
+     */
+    private void writeChecksumsToMets() throws IOException {
+        if (!checksumsToMets || fixityChecksums == null) {
+            return;
+        }
+        try {
+            Path metsFile = Path.of(process.getMetadataFilePath());
+            int checksumsChanged = createMetsLocationRewriter().rewrite(metsFile, UnaryOperator.identity(), fixityChecksums::getChecksum,
+                    fixityChecksums.getAlgorithm());
+            log.debug("{} checksums changed in the METS file of process {}", checksumsChanged, process.getTitel());
+        } catch (SwapException e) {
+            throw new IOException("Error writing checksums to meta.xml of process " + process.getTitel() + ": " + e.toString(), e);
+        }
+    }
+
+    /**
+     * @return a rewriter of the METS file that keeps as many numbered backups as Goobi does
+     */
+    private static MetsLocationRewriter createMetsLocationRewriter() {
+        return new MetsLocationRewriter(ConfigurationHelper.getInstance().getNumberOfMetaBackups());
+    }
+
+    /**
+     * update the file locations by streaming the METS file, without reading it into a DigitalDocument. The old file is kept as numbered
+     * backup, as many as Goobi keeps of its metadata files.
+     * 
+     * @param namesMap mapping from old names to new names
+     * @throws IOException if the METS file could not be read or written
+     */
+    private void updateMetsFileStreaming(NamesMap namesMap) throws IOException {
+        try {
+            Path metsFile = Path.of(process.getMetadataFilePath());
+            statistics.addBytes(Files.size(metsFile));
+            int changed;
+            if (checksumsToMets && fixityChecksums != null) {
+                changed = createMetsLocationRewriter().rewrite(metsFile, namesMap::getNewLocation, fixityChecksums::getChecksum,
+                        fixityChecksums.getAlgorithm());
+            } else {
+                changed = createMetsLocationRewriter().rewrite(metsFile, namesMap::getNewLocation);
+            }
+            if (changed > 0) {
+                statistics.addBytes(Files.size(metsFile));
+            }
+            log.debug("{} file locations and checksums changed in the METS file of process {}", changed, process.getTitel());
+        } catch (IOException | SwapException e) {
+            throw new IOException("Error writing updated filenames to meta.xml of process " + process.getTitel() + ": " + e.toString(), e);
+        }
+    }
+
     @Override
     public PluginGuiType getPluginGuiType() {
         return PluginGuiType.NONE;
@@ -484,13 +1493,38 @@ public class RenameFilesBeforeRosettaStepPlugin implements IStepPluginVersion2 {
 
     @Override
     public boolean execute() {
-        PluginReturnValue ret = run();
-        return ret != PluginReturnValue.ERROR;
+        // the caller closes the step if true is returned, so the files are renamed at once even if the plugin is configured to rename them in the
+        // background
+        PluginReturnValue ret = renameClaimed();
+        return ret == PluginReturnValue.FINISH;
     }
 
     private void writeJournalEntry(String message, LogType type) {
-        JournalEntry entry = new JournalEntry(this.process.getId(), new Date(), this.getTitle(), type, message, EntryType.PROCESS);
-        JournalManager.saveJournalEntry(entry);
+        if (type == LogType.ERROR) {
+            errorMessage = message;
+        }
+        runJournal.add(message, type);
+    }
+
+    /**
+     * run a task on the storage, within the budget of the batch if the process is part of one
+     * 
+     * @param path the folder or file the task works on
+     * @param task the task
+     * @return the result of the task
+     * @throws IOException if the task failed
+     */
+    private <T> T scheduled(String path, RenameScheduler.Task<T> task) throws IOException {
+        if (scheduler == null) {
+            return task.call();
+        }
+        return scheduler.run(Path.of(path), task);
+    }
+
+    /**
+     * outcome of renaming the files of one folder
+     */
+    private record FolderResult(String folder, int filesRenamed, IOException error) {
     }
 
 }
@@ -0,0 +1,636 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import de.sub.goobi.helper.StorageProviderInterface;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Write-ahead log of all moves of a rename run, stored in the process directory.
+ *
+ * Before the first file is moved, the names map and all folders of the run are written, followed by a BEGIN entry, and forced to disk. A journal
+ * without the BEGIN entry was left by a run that died while writing it, before any file was moved, so it is deleted and the run is planned again.
+ * Before the first file of a folder is moved, the complete plan of the folder is written and forced to disk. Executed moves are
+ * recorded in batches afterwards. If the run is interrupted, the file is still there at the next start and the run can either be resumed or rolled
+ * back. As the moves of a chain are executed in order, it is enough to know how many moves of a chain were recorded; the moves after that are
+ * checked against the storage. The only moves that are forced to disk on their own are the ones that park a file of a cycle in the temp folder,
+ * because a cycle looks the same before and after it was executed completely. Folders that are renamed with a {@link FolderSwap} get one entry
+ * before their staging folder is built and one after the swap, both forced to disk. Folders of the run without any chain or swap on record were
+ * either not reached or had nothing to rename, so a resumed run plans them again with the recorded names. The file is deleted once the METS file
+ * was updated as well.
+ *
+ * Format, one tab separated entry per line:
+ *
+ * <pre>
+ * MAP     old name      new name
+ * SUFFIX  folder name   suffix of the new names in this folder
+ * FOLDER  folder        temp folder name   true if its subfolders are renamed as well
+ * BEGIN   number of MAP entries    number of FOLDER entries
+ * CHAIN   id            folder      cycle
+ * MOVE    id            source      target
+ * DONE    id            number of executed moves of the chain, 1 for a swapped folder
+ * SWAP    id            folder      inverse
+ * METS    updated       true
+ * </pre>
+ */
+@Log4j2
+public class RenameJournal implements AutoCloseable {
+
+    public static final String FILE_NAME = "rename_journal.log";
+
+    // number of executed moves after which the recorded moves are flushed
+    private static final int FLUSH_INTERVAL = 200;
+
+    private static final String MAP = "MAP";
+    private static final String CHAIN = "CHAIN";
+    private static final String MOVE = "MOVE";
+    private static final String DONE = "DONE";
+    private static final String METS = "METS";
+    private static final String SWAP = "SWAP";
+    private static final String SUFFIX = "SUFFIX";
+    private static final String FOLDER = "FOLDER";
+    private static final String BEGIN = "BEGIN";
+    private static final String SEPARATOR = "\t";
+
+    @Getter
+    private final Path file;
+
+    private NamesMap namesMap;
+    // folders of the run, in the order in which they are renamed
+    private List<String> folders = List.of();
+    private String tempFolder;
+    private boolean recursive;
+    private FileOutputStream outputStream;
+    private BufferedWriter writer;
+    // next id of a chain or swap
+    private int nextId;
+    private int unflushed;
+    // true if the METS file of the recovered run was already written
+    @Getter
+    private boolean metsUpdated;
+    // suffixes of the new names by folder name of the recovered run
+    @Getter
+    private Map<String, String> folderSuffixes = new HashMap<>();
+
+    public RenameJournal(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @return true if an earlier run was interrupted and left its journal behind
+     */
+    public boolean exists() {
+        return Files.exists(file);
+    }
+
+    /**
+     * @return true if the journal of the interrupted run is complete up to the BEGIN entry, so that files may have been moved. Otherwise the run died
+     *         while writing the names map and nothing was moved.
+     * @throws IOException if the journal cannot be read
+     */
+    public boolean isStarted() throws IOException {
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            return lines.anyMatch(line -> line.startsWith(BEGIN + SEPARATOR) && line.split(SEPARATOR, -1).length == 3);
+        }
+    }
+
+    /**
+     * prepare a new run. Nothing is written until the first folder actually needs a move.
+     *
+     * @param namesMap mapping from old names to new names that is used in this run
+     */
+    public void begin(NamesMap namesMap) {
+        this.namesMap = namesMap;
+    }
+
+    /**
+     * prepare a new run. Nothing is written until the first folder actually needs a move, then the names map and all folders are written first.
+     *
+     * @param namesMap mapping from old names to new names that is used in this run
+     * @param folders paths as strings of all folders of the run
+     * @param tempFolder name of the subfolder that is used to break rename cycles
+     * @param recursive true if the files in the subfolders of the folders are renamed as well
+     */
+    public void begin(NamesMap namesMap, List<String> folders, String tempFolder, boolean recursive) {
+        this.namesMap = namesMap;
+        this.folders = List.copyOf(folders);
+        this.tempFolder = tempFolder;
+        this.recursive = recursive;
+    }
+
+    /**
+     * record the plan of a folder and force it to disk before any of its files is moved
+     *
+     * @param folder path as string of the folder
+     * @param plan the plan of the folder
+     * @return the ids of the chains of the plan, in the same order
+     * @throws IOException
+     */
+    public synchronized int[] planned(String folder, RenamePlan plan) throws IOException {
+        open();
+        int[] ids = new int[plan.getChains().size()];
+        for (int i = 0; i < ids.length; ++i) {
+            List<RenamePlan.Move> chain = plan.getChains().get(i);
+            ids[i] = nextId++;
+            boolean cycle = chain.size() > 1 && chain.get(0).target().equals(tempName(chain));
+            writeLine(CHAIN, String.valueOf(ids[i]), folder, String.valueOf(cycle));
+            for (RenamePlan.Move move : chain) {
+                writeLine(MOVE, String.valueOf(ids[i]), move.source(), move.target());
+            }
+        }
+        sync();
+        return ids;
+    }
+
+    /**
+     * record that a folder is about to be renamed by swapping it with a staging folder, and force it to disk before the staging folder is built
+     *
+     * @param folder path as string of the folder
+     * @return the id of the swap
+     * @throws IOException
+     */
+    public synchronized int swapPlanned(String folder) throws IOException {
+        return swapPlanned(folder, false);
+    }
+
+    private synchronized int swapPlanned(String folder, boolean inverse) throws IOException {
+        open();
+        int id = nextId++;
+        writeLine(SWAP, String.valueOf(id), folder, String.valueOf(inverse));
+        sync();
+        return id;
+    }
+
+    /**
+     * record that a folder was swapped with its staging folder. Its old folder must not be removed before this entry is on disk.
+     *
+     * @param swapId id of the swap
+     * @throws IOException
+     */
+    public synchronized void swapped(int swapId) throws IOException {
+        open();
+        writeLine(DONE, String.valueOf(swapId), "1");
+        sync();
+    }
+
+    /**
+     * record that a chain has made progress
+     *
+     * @param chainId id of the chain
+     * @param executed number of moves of the chain that are executed by now
+     * @param force true if the entry must be on disk before the next move is started
+     * @throws IOException
+     */
+    public synchronized void executed(int chainId, int executed, boolean force) throws IOException {
+        writeLine(DONE, String.valueOf(chainId), String.valueOf(executed));
+        if (force) {
+            sync();
+        } else if (++unflushed >= FLUSH_INTERVAL) {
+            writer.flush();
+            unflushed = 0;
+        }
+    }
+
+    /**
+     * record that the METS file was written with the new names. Only needed if files were moved at all.
+     *
+     * @throws IOException
+     */
+    public synchronized void metsWritten() throws IOException {
+        if (writer != null) {
+            writeLine(METS, "updated", "true");
+            sync();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+            outputStream = null;
+        }
+    }
+
+    /**
+     * remove the journal after the run has completed, including the update of the METS file
+     *
+     * @throws IOException
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * execute all moves of an interrupted run that are still missing
+     *
+     * @param storageProvider StorageProvider used to check for and move files
+     * @return the names map of the interrupted run, which is still needed to update the METS file
+     * @throws IOException
+     */
+    public Map<String, String> resume(StorageProviderInterface storageProvider) throws IOException {
+        Recovered recovered = read();
+        int moves = 0;
+        for (RecoveredChain chain : recovered.chains()) {
+            int executed = countExecuted(chain, storageProvider);
+            for (int i = executed; i < chain.moves().size(); ++i) {
+                move(storageProvider, chain.folder(), chain.moves().get(i));
+                moves++;
+            }
+        }
+        for (RecoveredSwap swap : recovered.swaps()) {
+            completeSwap(swap, recovered.namesMap());
+        }
+        removeEmptyTempFolders(recovered, storageProvider);
+        moves += renameFoldersNotReached(recovered, storageProvider);
+        log.info("Resumed interrupted rename run from {}, {} moves were still missing", file, moves);
+        return recovered.namesMap();
+    }
+
+    /**
+     * undo all moves of an interrupted run
+     *
+     * @param storageProvider StorageProvider used to check for and move files
+     * @return the names map of the interrupted run, which is needed to restore the METS file if it was already written
+     * @throws IOException
+     */
+    public Map<String, String> rollback(StorageProviderInterface storageProvider) throws IOException {
+        Recovered recovered = read();
+        int moves = 0;
+        List<RecoveredChain> chains = recovered.chains();
+        for (int c = chains.size() - 1; c >= 0; --c) {
+            RecoveredChain chain = chains.get(c);
+            int executed = countExecuted(chain, storageProvider);
+            for (int i = executed - 1; i >= 0; --i) {
+                RenamePlan.Move move = chain.moves().get(i);
+                move(storageProvider, chain.folder(), new RenamePlan.Move(move.target(), move.source()));
+                moves++;
+            }
+        }
+        List<RecoveredSwap> swaps = recovered.swaps();
+        for (int i = swaps.size() - 1; i >= 0; --i) {
+            undoSwap(swaps.get(i), recovered.namesMap());
+        }
+        removeEmptyTempFolders(recovered, storageProvider);
+        log.info("Rolled back interrupted rename run from {}, {} moves were undone", file, moves);
+        return recovered.namesMap();
+    }
+
+    /**
+     * rename the folders of the interrupted run that have neither a chain nor a swap on record. Such a folder was either not reached, or nothing in
+     * it had to be renamed, and in both cases a new plan with the recorded names is the right one. The new plans are recorded like the ones of a
+     * normal run, so that an interrupted recovery can be resumed as well.
+     *
+     * @return the number of executed moves
+     */
+    private int renameFoldersNotReached(Recovered recovered, StorageProviderInterface storageProvider) throws IOException {
+        Set<Path> reached = new HashSet<>();
+        for (RecoveredChain chain : recovered.chains()) {
+            reached.add(chain.folder());
+        }
+        for (RecoveredSwap swap : recovered.swaps()) {
+            reached.add(swap.folder());
+        }
+        NamesMap recoveredNames = NamesMap.of(recovered.namesMap()).withFolderSuffixes(folderSuffixes);
+        int moves = 0;
+        for (RecoveredFolder folder : recovered.folders()) {
+            if (!storageProvider.isFileExists(folder.folder())) {
+                continue;
+            }
+            NamesMap folderNames = recoveredNames.forFolder(folder.folder().getFileName().toString());
+            if (!reached.contains(folder.folder())) {
+                moves += renameFolder(storageProvider, folder.folder(), listFiles(storageProvider, folder), folderNames, folder.tempFolder());
+            }
+            if (folder.recursive()) {
+                AtomicInteger subfolderMoves = new AtomicInteger();
+                FolderTree.walkSubfolders(folder.folder(), folder.tempFolder(), 1, snapshot -> {
+                    if (!reached.contains(snapshot.getFolder())) {
+                        subfolderMoves.addAndGet(renameFolder(storageProvider, snapshot.getFolder(), snapshot.getFileNames(), folderNames,
+                                folder.tempFolder()));
+                    }
+                });
+                moves += subfolderMoves.get();
+            }
+        }
+        return moves;
+    }
+
+    private static List<String> listFiles(StorageProviderInterface storageProvider, RecoveredFolder folder) {
+        List<String> fileNames = new ArrayList<>();
+        for (Path file : storageProvider.listFiles(folder.folder().toString())) {
+            String name = file.getFileName().toString();
+            if (!name.startsWith(".") && !name.equals(folder.tempFolder()) && !storageProvider.isDirectory(file)) {
+                fileNames.add(name);
+            }
+        }
+        return fileNames;
+    }
+
+    /**
+     * plan a folder, record its plan and execute it
+     *
+     * @return the number of executed moves
+     */
+    private int renameFolder(StorageProviderInterface storageProvider, Path folder, List<String> fileNames, NamesMap folderNames,
+            String tempFolderName) throws IOException {
+        RenamePlan plan = RenamePlan.create(fileNames, folderNames::getNewFileName, tempFolderName);
+        if (plan.isEmpty()) {
+            return 0;
+        }
+        int[] ids = planned(folder.toString(), plan);
+        int moves = 0;
+        for (int i = 0; i < ids.length; ++i) {
+            List<RenamePlan.Move> chain = plan.getChains().get(i);
+            for (int j = 0; j < chain.size(); ++j) {
+                RenamePlan.Move move = chain.get(j);
+                move(storageProvider, folder, move);
+                executed(ids[i], j + 1, move.target().startsWith(tempFolderName + "/"));
+                moves++;
+            }
+        }
+        Path tempFolderPath = folder.resolve(tempFolderName);
+        if (plan.getCycles() > 0 && storageProvider.listFiles(tempFolderPath.toString()).isEmpty()) {
+            storageProvider.deleteDir(tempFolderPath);
+        }
+        log.debug("Renamed {} files in {}, which the interrupted run had not reached", plan.getFilesRenamed(), folder);
+        return moves;
+    }
+
+    /**
+     * find out how many moves of a chain were executed. Everything up to the recorded number is done. After that, the source of the last executed move
+     * is the only one that is missing, since every later source still exists and every earlier one was recreated by its successor.
+     */
+    private static int countExecuted(RecoveredChain chain, StorageProviderInterface storageProvider) {
+        List<RenamePlan.Move> moves = chain.moves();
+        int recorded = chain.recorded();
+        if (chain.cycle() && recorded == 0) {
+            // the parking move is forced to disk before the cycle continues
+            return storageProvider.isFileExists(chain.folder().resolve(moves.get(0).target())) ? 1 : 0;
+        }
+        for (int i = moves.size() - 1; i >= recorded; --i) {
+            if (!storageProvider.isFileExists(chain.folder().resolve(moves.get(i).source()))) {
+                return i + 1;
+            }
+        }
+        return recorded;
+    }
+
+    /**
+     * bring a swapped folder to its new names. A swap that has not started yet is executed again from the beginning.
+     */
+    private void completeSwap(RecoveredSwap swap, Map<String, String> recoveredMap) throws IOException {
+        FolderSwap folderSwap = new FolderSwap(swap.folder());
+        if (!swap.done()) {
+            if (folderSwap.isSwapped()) {
+                folderSwap.completeSwap();
+                swapped(swap.id());
+            } else {
+                executeSwap(folderSwap, swap.id(), newNames(recoveredMap, swap));
+                return;
+            }
+        }
+        folderSwap.cleanUp();
+    }
+
+    /**
+     * bring a swapped folder back to its old names. As long as the old folder is there it is simply swapped back, otherwise the folder is swapped
+     * once more with the inverse names, which is recorded like any other swap.
+     */
+    private void undoSwap(RecoveredSwap swap, Map<String, String> recoveredMap) throws IOException {
+        FolderSwap folderSwap = new FolderSwap(swap.folder());
+        if (!swap.done()) {
+            if (folderSwap.isSwapped()) {
+                folderSwap.undoSwap();
+            } else {
+                folderSwap.discard();
+            }
+            return;
+        }
+        // after the swap was recorded, the old folder may already be partly removed
+        folderSwap.cleanUp();
+        int id = swapPlanned(swap.folder().toString(), !swap.inverse());
+        executeSwap(folderSwap, id, newNames(recoveredMap, new RecoveredSwap(id, swap.folder(), !swap.inverse(), false)));
+    }
+
+    private void executeSwap(FolderSwap folderSwap, int id, UnaryOperator<String> newNames) throws IOException {
+        List<String> fileNames = FolderSwap.listSwappableFiles(folderSwap.getFolder());
+        if (fileNames == null) {
+            throw new IOException("Cannot swap folder " + folderSwap.getFolder() + ", it contains subfolders or links");
+        }
+        folderSwap.stage(fileNames, newNames);
+        folderSwap.swap();
+        swapped(id);
+        folderSwap.cleanUp();
+    }
+
+    private UnaryOperator<String> newNames(Map<String, String> recoveredMap, RecoveredSwap swap) {
+        NamesMap map = NamesMap.of(recoveredMap).withFolderSuffixes(folderSuffixes);
+        if (swap.inverse()) {
+            map = map.inverse();
+        }
+        return map.forFolder(swap.folder().getFileName().toString())::getNewFileName;
+    }
+
+    private static void move(StorageProviderInterface storageProvider, Path folder, RenamePlan.Move move) throws IOException {
+        Path target = folder.resolve(move.target());
+        if (!storageProvider.isFileExists(target.getParent())) {
+            storageProvider.createDirectories(target.getParent());
+        }
+        storageProvider.move(folder.resolve(move.source()), target);
+    }
+
+    private static void removeEmptyTempFolders(Recovered recovered, StorageProviderInterface storageProvider) {
+        Set<Path> tempFolders = new LinkedHashSet<>();
+        for (RecoveredChain chain : recovered.chains()) {
+            if (chain.cycle()) {
+                tempFolders.add(chain.folder().resolve(chain.moves().get(0).target()).getParent());
+            }
+        }
+        for (Path tempFolder : tempFolders) {
+            if (storageProvider.isFileExists(tempFolder) && storageProvider.listFiles(tempFolder.toString()).isEmpty()) {
+                storageProvider.deleteDir(tempFolder);
+            }
+        }
+    }
+
+    private Recovered read() throws IOException {
+        Map<String, String> recoveredMap = new HashMap<>();
+        Map<Integer, Path> folders = new LinkedHashMap<>();
+        Map<Integer, Boolean> cycles = new HashMap<>();
+        Map<Integer, List<RenamePlan.Move>> moves = new HashMap<>();
+        Map<Integer, Integer> recorded = new HashMap<>();
+        Map<Integer, Path> swapFolders = new LinkedHashMap<>();
+        Map<Integer, Boolean> inverseSwaps = new HashMap<>();
+        List<RecoveredFolder> runFolders = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] fields = line.split(SEPARATOR, -1);
+            // the last line may be incomplete if the run died while writing it
+            if (fields.length < 3) {
+                continue;
+            }
+            switch (fields[0]) {
+                case MAP:
+                    recoveredMap.put(fields[1], fields[2]);
+                    break;
+                case CHAIN:
+                    if (fields.length == 4) {
+                        int id = Integer.parseInt(fields[1]);
+                        folders.put(id, Path.of(fields[2]));
+                        cycles.put(id, Boolean.valueOf(fields[3]));
+                        moves.put(id, new ArrayList<>());
+                        nextId = Math.max(nextId, id + 1);
+                    }
+                    break;
+                case SWAP:
+                    if (fields.length == 4) {
+                        int id = Integer.parseInt(fields[1]);
+                        swapFolders.put(id, Path.of(fields[2]));
+                        inverseSwaps.put(id, Boolean.valueOf(fields[3]));
+                        nextId = Math.max(nextId, id + 1);
+                    }
+                    break;
+                case MOVE:
+                    if (fields.length == 4) {
+                        moves.get(Integer.parseInt(fields[1])).add(new RenamePlan.Move(fields[2], fields[3]));
+                    }
+                    break;
+                case DONE:
+                    recorded.merge(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), Math::max);
+                    break;
+                case SUFFIX:
+                    folderSuffixes.put(fields[1], fields[2]);
+                    break;
+                case FOLDER:
+                    if (fields.length == 4) {
+                        runFolders.add(new RecoveredFolder(Path.of(fields[1]), fields[2], Boolean.parseBoolean(fields[3])));
+                    }
+                    break;
+                case METS:
+                    metsUpdated = true;
+                    break;
+                case BEGIN:
+                    break;
+                default:
+                    log.warn("Unknown entry in rename journal {}: {}", file, line);
+            }
+        }
+        List<RecoveredChain> chains = new ArrayList<>();
+        for (Map.Entry<Integer, Path> entry : folders.entrySet()) {
+            int id = entry.getKey();
+            chains.add(new RecoveredChain(entry.getValue(), cycles.get(id), moves.get(id), recorded.getOrDefault(id, 0)));
+        }
+        List<RecoveredSwap> swaps = new ArrayList<>();
+        for (Map.Entry<Integer, Path> entry : swapFolders.entrySet()) {
+            int id = entry.getKey();
+            swaps.add(new RecoveredSwap(id, entry.getValue(), inverseSwaps.get(id), recorded.containsKey(id)));
+        }
+        return new Recovered(recoveredMap, chains, swaps, runFolders);
+    }
+
+    /**
+     * open the file for appending. The names map and the folders of the run are written and forced to disk first if the file is new, a recovered
+     * file already has them.
+     */
+    private void open() throws IOException {
+        if (writer != null) {
+            return;
+        }
+        boolean newFile = !Files.exists(file);
+        outputStream = new FileOutputStream(file.toFile(), true);
+        writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        if (newFile && namesMap != null) {
+            try {
+                namesMap.forEach((oldName, newName) -> {
+                    try {
+                        writeLine(MAP, oldName, newName);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            for (Map.Entry<String, String> entry : namesMap.getFolderSuffixes().entrySet()) {
+                writeLine(SUFFIX, entry.getKey(), entry.getValue());
+            }
+            for (String folder : folders) {
+                writeLine(FOLDER, folder, tempFolder, String.valueOf(recursive));
+            }
+            // the first chain must not be on disk before the complete header
+            writeLine(BEGIN, String.valueOf(namesMap.size()), String.valueOf(folders.size()));
+            sync();
+        }
+    }
+
+    private void writeLine(String... fields) throws IOException {
+        for (String field : fields) {
+            if (field.contains(SEPARATOR) || field.contains("\n")) {
+                throw new IOException("Cannot record the name " + field + " in the rename journal");
+            }
+        }
+        writer.write(String.join(SEPARATOR, fields));
+        writer.newLine();
+    }
+
+    private void sync() throws IOException {
+        writer.flush();
+        outputStream.getChannel().force(false);
+        unflushed = 0;
+    }
+
+    private static String tempName(List<RenamePlan.Move> chain) {
+        RenamePlan.Move last = chain.get(chain.size() - 1);
+        return last.source();
+    }
+
+    private record RecoveredChain(Path folder, boolean cycle, List<RenamePlan.Move> moves, int recorded) {
+    }
+
+    private record RecoveredSwap(int id, Path folder, boolean inverse, boolean done) {
+    }
+
+    private record RecoveredFolder(Path folder, String tempFolder, boolean recursive) {
+    }
+
+    private record Recovered(Map<String, String> namesMap, List<RecoveredChain> chains, List<RecoveredSwap> swaps, List<RecoveredFolder> folders) {
+    }
+}
@@ -0,0 +1,203 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Counters of all runs of the plugin in this JVM, exposed through JMX. They allow to compare runs across many processes and to spot slow storage.
+ */
+@Log4j2
+public class RenameMetrics implements RenameMetricsMXBean {
+
+    public static final String OBJECT_NAME = "de.intranda.goobi.plugins:type=RenameFilesBeforeRosetta";
+
+    private static final RenameMetrics INSTANCE = new RenameMetrics();
+
+    static {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            // a bean that is registered already belongs to an earlier class loader of the plugin, e.g. before a redeployment; it would pin that class
+            // loader and show stale numbers, so it is replaced
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(INSTANCE, name);
+        } catch (JMException e) {
+            log.warn("Cannot register the rename metrics in JMX: {}", e.toString());
+        }
+    }
+
+    private long runs;
+    private long failedRuns;
+    private long filesRenamed;
+    private long collisions;
+    private long tempMoves;
+    private long bytesTouched;
+    private long totalMillis;
+    private String lastProcess;
+    private long lastRunMillis;
+    private long lastRunFilesPerSecond;
+    private Map<String, Long> lastRunPhases = new LinkedHashMap<>();
+    // progress of the runs that are not finished yet, by process title
+    private final Map<String, RenameProgress> runsInProgress = new ConcurrentHashMap<>();
+
+    private RenameMetrics() {
+    }
+
+    public static RenameMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * make the progress of a run visible until it is finished
+     *
+     * @param processTitle title of the process
+     * @param progress progress of the run
+     */
+    public void started(String processTitle, RenameProgress progress) {
+        runsInProgress.put(processTitle, progress);
+    }
+
+    /**
+     * add the numbers of a finished run
+     *
+     * @param processTitle title of the process
+     * @param statistics numbers of the run
+     * @param successful false if the run ended with an error
+     */
+    public synchronized void record(String processTitle, RenameStatistics statistics, boolean successful) {
+        long millis = statistics.getElapsedMillis();
+        runs++;
+        if (!successful) {
+            failedRuns++;
+        }
+        filesRenamed += statistics.getFilesRenamed();
+        collisions += statistics.getCollisions();
+        tempMoves += statistics.getTempMoves();
+        bytesTouched += statistics.getBytesTouched();
+        totalMillis += millis;
+        lastProcess = processTitle;
+        lastRunMillis = millis;
+        lastRunFilesPerSecond = millis == 0 ? 0 : statistics.getFilesRenamed() * 1000 / millis;
+        lastRunPhases = statistics.getPhases();
+        runsInProgress.remove(processTitle);
+    }
+
+    @Override
+    public synchronized long getRuns() {
+        return runs;
+    }
+
+    @Override
+    public synchronized long getFailedRuns() {
+        return failedRuns;
+    }
+
+    @Override
+    public synchronized long getFilesRenamed() {
+        return filesRenamed;
+    }
+
+    @Override
+    public synchronized long getCollisions() {
+        return collisions;
+    }
+
+    @Override
+    public synchronized long getTempMoves() {
+        return tempMoves;
+    }
+
+    @Override
+    public synchronized long getBytesTouched() {
+        return bytesTouched;
+    }
+
+    @Override
+    public synchronized long getTotalMillis() {
+        return totalMillis;
+    }
+
+    @Override
+    public synchronized String getLastProcess() {
+        return lastProcess;
+    }
+
+    @Override
+    public synchronized long getLastRunMillis() {
+        return lastRunMillis;
+    }
+
+    @Override
+    public synchronized long getLastRunFilesPerSecond() {
+        return lastRunFilesPerSecond;
+    }
+
+    @Override
+    public synchronized Map<String, Long> getLastRunPhases() {
+        return new LinkedHashMap<>(lastRunPhases);
+    }
+
+    @Override
+    public Map<String, String> getRunsInProgress() {
+        Map<String, String> progress = new TreeMap<>();
+        runsInProgress.forEach((processTitle, run) -> progress.put(processTitle, run.toString()));
+        return progress;
+    }
+
+    @Override
+    public Map<String, Integer> getConcurrencyLimits() {
+        return AdaptiveLimiter.getLimits();
+    }
+
+    @Override
+    public String renameProcesses(String processIds, String stepTitle, int globalLimit, int mountLimit) {
+        List<Integer> ids = new ArrayList<>();
+        for (String id : processIds.split("[,\\s]+")) {
+            if (id.isEmpty()) {
+                continue;
+            }
+            try {
+                ids.add(Integer.valueOf(id));
+            } catch (NumberFormatException e) {
+                return "Not a process id: " + id;
+            }
+        }
+        return RenameBatch.startInBackground(ids, stepTitle, Math.max(1, globalLimit), Math.max(1, mountLimit));
+    }
+
+    @Override
+    public String getBatchProgress() {
+        return RenameBatch.getBackgroundProgress();
+    }
+}
@@ -0,0 +1,66 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+import java.util.Map;
+
+/**
+ * Management interface of {@link RenameMetrics}, registered as de.intranda.goobi.plugins:type=RenameFilesBeforeRosetta
+ */
+public interface RenameMetricsMXBean {
+
+    long getRuns();
+
+    long getFailedRuns();
+
+    long getFilesRenamed();
+
+    long getCollisions();
+
+    long getTempMoves();
+
+    long getBytesTouched();
+
+    long getTotalMillis();
+
+    String getLastProcess();
+
+    long getLastRunMillis();
+
+    long getLastRunFilesPerSecond();
+
+    Map<String, Long> getLastRunPhases();
+
+    Map<String, String> getRunsInProgress();
+
+    Map<String, Integer> getConcurrencyLimits();
+
+    /**
+     * rename the files of many processes in the background, see {@link RenameBatch}
+     *
+     * @param processIds ids of the processes, separated by commas or spaces
+     * @param stepTitle title of the step whose configuration is used for each process
+     * @param globalLimit number of processes and of storage tasks that run at the same time in the whole batch
+     * @param mountLimit number of storage tasks that run at the same time on one file system
+     * @return a message whether the batch was started
+     */
+    String renameProcesses(String processIds, String stepTitle, int globalLimit, int mountLimit);
+
+    String getBatchProgress();
+}
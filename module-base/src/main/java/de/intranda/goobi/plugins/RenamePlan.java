@@ -0,0 +1,170 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import lombok.Getter;
+
+/**
+ * Plan of all moves that are needed to rename the files of one folder.
+ *
+ * The mapping from old to new file names is a permutation graph in which every file has at most one outgoing and at most one incoming edge. Its
+ * components are therefore either chains or cycles. A chain is executed backwards, starting with the move whose target name is free, so that every
+ * file is moved exactly once. Only a cycle needs a temporary name: one of its files is parked in the temp folder, the rest of the cycle follows and
+ * the parked file is moved to its final name at the end.
+ */
+public class RenamePlan {
+
+    /**
+     * a single move inside of the folder, both names are relative to the folder
+     */
+    public record Move(String source, String target) {
+    }
+
+    // moves that must be executed in the given order, different chains are independent of each other
+    @Getter
+    private final List<List<Move>> chains;
+    // number of cycles that had to be broken with a temporary name
+    @Getter
+    private final int cycles;
+    // number of files that get a new name
+    @Getter
+    private final int filesRenamed;
+    // number of files whose new name was taken by another file of the folder when planning
+    @Getter
+    private final int collisions;
+
+    private RenamePlan(List<List<Move>> chains, int cycles, int filesRenamed, int collisions) {
+        this.chains = chains;
+        this.cycles = cycles;
+        this.filesRenamed = filesRenamed;
+        this.collisions = collisions;
+    }
+
+    /**
+     * @return number of moves into and out of the temp folder, two per cycle
+     */
+    public int getTempMoves() {
+        return 2 * cycles;
+    }
+
+    /**
+     * @return true if no file needs to be moved
+     */
+    public boolean isEmpty() {
+        return chains.isEmpty();
+    }
+
+    /**
+     * create the plan for a folder
+     *
+     * @param fileNames names of all files that are currently in the folder
+     * @param newNames function returning the new name of a file, or the unchanged name if the file should keep it
+     * @param tempFolder name of the subfolder that is used to break cycles
+     * @return the plan
+     * @throws IOException if two files would get the same name, or if a new name is occupied by a file that keeps its name
+     */
+    public static RenamePlan create(Collection<String> fileNames, UnaryOperator<String> newNames, String tempFolder) throws IOException {
+        Set<String> present = new HashSet<>(fileNames);
+        // keep the listing order, so that the plan is deterministic
+        Map<String, String> sourceToTarget = new LinkedHashMap<>();
+        Map<String, String> targetToSource = new HashMap<>();
+        for (String fileName : fileNames) {
+            String newName = newNames.apply(fileName);
+            if (newName.equals(fileName)) {
+                continue;
+            }
+            String previous = targetToSource.put(newName, fileName);
+            if (previous != null) {
+                throw new IOException("The files " + previous + " and " + fileName + " would both be renamed to " + newName);
+            }
+            sourceToTarget.put(fileName, newName);
+        }
+
+        for (Map.Entry<String, String> entry : sourceToTarget.entrySet()) {
+            String target = entry.getValue();
+            if (present.contains(target) && !sourceToTarget.containsKey(target)) {
+                throw new IOException("Cannot rename " + entry.getKey() + " to " + target + ", the name is used by a file that is not renamed");
+            }
+        }
+
+        List<List<Move>> chains = new ArrayList<>();
+        Set<String> planned = new HashSet<>();
+        int collisions = 0;
+
+        // chains: start with the moves whose targets are free and walk backwards to the files that are waiting for them
+        for (Map.Entry<String, String> entry : sourceToTarget.entrySet()) {
+            if (sourceToTarget.containsKey(entry.getValue())) {
+                continue;
+            }
+            List<Move> chain = new ArrayList<>();
+            String source = entry.getKey();
+            String target = entry.getValue();
+            while (source != null) {
+                chain.add(new Move(source, target));
+                planned.add(source);
+                target = source;
+                source = targetToSource.get(source);
+            }
+            chains.add(chain);
+            // only the first move of a chain has a free target
+            collisions += chain.size() - 1;
+        }
+
+        // cycles: everything that is left over
+        int cycles = 0;
+        for (Map.Entry<String, String> entry : sourceToTarget.entrySet()) {
+            String first = entry.getKey();
+            if (planned.contains(first)) {
+                continue;
+            }
+            String firstTarget = entry.getValue();
+            String parked = tempFolder + "/" + firstTarget;
+            List<Move> chain = new ArrayList<>();
+            chain.add(new Move(first, parked));
+            planned.add(first);
+            String target = first;
+            String source = targetToSource.get(first);
+            while (!source.equals(first)) {
+                chain.add(new Move(source, target));
+                planned.add(source);
+                target = source;
+                source = targetToSource.get(source);
+            }
+            chain.add(new Move(parked, firstTarget));
+            chains.add(chain);
+            cycles++;
+            // every file of a cycle has a taken target, the cycle has one move more than files
+            collisions += chain.size() - 1;
+        }
+
+        return new RenamePlan(chains, cycles, sourceToTarget.size(), collisions);
+    }
+}
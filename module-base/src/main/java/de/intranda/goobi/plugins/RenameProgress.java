@@ -0,0 +1,93 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Progress of one run, as files done and files to rename per folder. It is updated by the threads that rename the files and read by JMX and the
+ * log, so every access is synchronized.
+ */
+public class RenameProgress {
+
+    private final Map<String, int[]> folders = new LinkedHashMap<>();
+
+    /**
+     * start a folder
+     *
+     * @param folder name of the folder
+     * @param total number of files that get a new name
+     */
+    public synchronized void folderStarted(String folder, int total) {
+        folders.put(folder, new int[] { 0, total });
+    }
+
+    /**
+     * add files to rename to a folder, e.g. the files of its subfolders, starting the folder if necessary
+     *
+     * @param folder name of the folder
+     * @param files number of further files that get a new name
+     */
+    public synchronized void filesAdded(String folder, int files) {
+        folders.computeIfAbsent(folder, key -> new int[2])[1] += files;
+    }
+
+    /**
+     * count renamed files of a folder
+     *
+     * @param folder name of the folder
+     * @param files number of files that got their new name
+     */
+    public synchronized void filesDone(String folder, int files) {
+        int[] counts = folders.get(folder);
+        if (counts != null) {
+            counts[0] += files;
+        }
+    }
+
+    /**
+     * @return files done and files to rename of all folders started so far
+     */
+    public synchronized int[] getTotal() {
+        int[] total = new int[2];
+        for (int[] counts : folders.values()) {
+            total[0] += counts[0];
+            total[1] += counts[1];
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (folders.isEmpty()) {
+            return "waiting";
+        }
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, int[]> entry : folders.entrySet()) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(entry.getKey()).append(' ').append(entry.getValue()[0]).append('/').append(entry.getValue()[1]);
+        }
+        return builder.toString();
+    }
+}
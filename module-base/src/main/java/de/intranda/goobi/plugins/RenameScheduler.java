@@ -0,0 +1,107 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+import lombok.Getter;
+
+/**
+ * Shared I/O budget of all processes of a batch. Every folder rename and METS update of a process is a task that needs a permit of its mount and a
+ * permit of the whole batch, so that neither a single file system nor the storage as a whole gets more concurrent work than configured. The
+ * semaphores are fair: tasks get their permits in the order in which they asked for them, so the processes of a batch are served first come, first
+ * served and none of them starves.
+ *
+ * The permit of the mount is taken first. A task that waits for a busy mount does not hold a global permit, which tasks on other mounts could use.
+ */
+public class RenameScheduler {
+
+    /**
+     * a unit of work on the storage
+     */
+    @FunctionalInterface
+    public interface Task<T> {
+        T call() throws IOException;
+    }
+
+    @Getter
+    private final int globalLimit;
+    @Getter
+    private final int mountLimit;
+    private final Semaphore global;
+    // permits by file system, created when a mount is used the first time
+    private final Map<Object, Semaphore> mounts = new ConcurrentHashMap<>();
+
+    /**
+     * @param globalLimit number of tasks that run at the same time in the whole batch
+     * @param mountLimit number of tasks that run at the same time on one file system
+     */
+    public RenameScheduler(int globalLimit, int mountLimit) {
+        this.globalLimit = Math.max(1, globalLimit);
+        this.mountLimit = Math.max(1, mountLimit);
+        this.global = new Semaphore(this.globalLimit, true);
+    }
+
+    /**
+     * run a task as soon as its mount and the batch have a free permit
+     *
+     * @param path the folder or file the task works on, it determines the mount
+     * @param task the task
+     * @return the result of the task
+     * @throws IOException if the task failed, or the thread was interrupted while waiting
+     */
+    public <T> T run(Path path, Task<T> task) throws IOException {
+        Semaphore mount = mounts.computeIfAbsent(mountOf(path), key -> new Semaphore(mountLimit, true));
+        try {
+            mount.acquire();
+            try {
+                global.acquire();
+                try {
+                    return task.call();
+                } finally {
+                    global.release();
+                }
+            } finally {
+                mount.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to work on " + path, e);
+        }
+    }
+
+    /**
+     * @return the file system of the path, or its root if the path is not on a local file system
+     */
+    static Object mountOf(Path path) {
+        try {
+            return Files.getFileStore(path);
+        } catch (IOException e) {
+            Path root = path.toAbsolutePath().getRoot();
+            return root == null ? "" : root;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.SubnodeConfiguration;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * The values of one configuration block of the plugin, read once when the block is matched. Unlike the block itself the settings are immutable, so
+ * one instance can be shared by all executions and threads. Values that contain variables are kept as configured, they are resolved per process
+ * when a run starts.
+ *
+ * @param adaptiveConcurrency true if the number of moves in flight per storage root follows the latency of the storage
+ * @param targetLatency target of the 99th percentile of the move latency in milliseconds
+ * @param maxConcurrency highest number of moves in flight per storage root
+ * @param folderThreads number of folders that are renamed at the same time
+ * @param useVirtualThreads true if every folder is renamed in its own virtual thread
+ * @param recoveryMode what to do with the files of an interrupted run: resume or rollback
+ * @param metsUpdateMode how the METS file is updated: ugh or streaming
+ * @param renameMode how the files of a folder are renamed: move or staging
+ * @param order how the files are numbered: listing or mets
+ * @param numbering which files get new numbers: all or append
+ * @param rewriteOcrReferences true if the image references in the ALTO and OCR XML files are updated as well
+ * @param checksumAlgorithm algorithm of the fixity checksums, empty if no checksums are computed
+ * @param checksumManifest name of the checksum manifest in the process folder
+ * @param checksumsToMets true if the checksums are written to the METS file as well
+ * @param reuseMetsChecksums true if a checksum in the METS file may be reused
+ * @param journalSummary true if the journal gets one summary entry instead of one entry per folder
+ * @param asynchronous true if the files are renamed in the background
+ * @param s3Concurrency number of moves that are issued at the same time on S3
+ * @param crossDeviceThreads number of files that are copied at the same time to a temp folder on another file system
+ * @param recursive true if the files in the subfolders are renamed as well
+ * @param treeThreads number of threads that walk the subtrees of a folder in the recursive mode
+ * @param format the format of the counter, its zeros are the default number of digits
+ * @param mainImageFolder the folder whose files are numbered, may contain variables
+ * @param namingTemplate the template of the new names, may contain variables
+ * @param folderSuffixes the configured suffixes of the new names, in the order of the configuration
+ * @param additionalFolders the additional folders to rename, may contain variables
+ */
+public record RenameSettings(boolean adaptiveConcurrency, int targetLatency, int maxConcurrency, int folderThreads, boolean useVirtualThreads,
+        String recoveryMode, String metsUpdateMode, String renameMode, String order, String numbering, boolean rewriteOcrReferences,
+        String checksumAlgorithm, String checksumManifest, boolean checksumsToMets, boolean reuseMetsChecksums, boolean journalSummary,
+        boolean asynchronous, int s3Concurrency, int crossDeviceThreads, boolean recursive, int treeThreads, String format, String mainImageFolder,
+        String namingTemplate, List<FolderSuffix> folderSuffixes, List<String> additionalFolders) {
+
+    private static final String DEFAULT_FORMAT = "0000";
+    private static final String DEFAULT_NAMING_TEMPLATE = "{titletail}_{counter}";
+    private static final int DEFAULT_FOLDER_THREADS = 1;
+    private static final int DEFAULT_S3_CONCURRENCY = 16;
+    private static final int DEFAULT_CROSS_DEVICE_THREADS = 4;
+    private static final int DEFAULT_TREE_THREADS = 4;
+    private static final String CONCURRENCY_ADAPTIVE = "adaptive";
+    private static final int DEFAULT_TARGET_LATENCY = 50;
+    private static final int DEFAULT_MAX_CONCURRENCY = 32;
+    private static final String DEFAULT_CHECKSUM_MANIFEST = "manifest-{algorithm}.txt";
+
+    /**
+     * a configured suffix of the new names in a folder
+     *
+     * @param folder the folder, may contain variables
+     * @param suffix the suffix of the new names
+     */
+    public record FolderSuffix(String folder, String suffix) {
+    }
+
+    public RenameSettings {
+        folderSuffixes = List.copyOf(folderSuffixes);
+        additionalFolders = List.copyOf(additionalFolders);
+    }
+
+    /**
+     * read the settings of a configuration block, with the defaults for the missing values
+     *
+     * @param config the matched configuration block
+     * @return the settings
+     */
+    public static RenameSettings read(SubnodeConfiguration config) {
+        String format = config.getString("format");
+        if (StringUtils.isBlank(format)) {
+            format = DEFAULT_FORMAT;
+        }
+        List<FolderSuffix> folderSuffixes = new ArrayList<>();
+        for (HierarchicalConfiguration folderSuffix : config.configurationsAt("folderSuffix")) {
+            String folder = folderSuffix.getString("@folder");
+            if (StringUtils.isNotBlank(folder)) {
+                folderSuffixes.add(new FolderSuffix(folder, folderSuffix.getString(".", "")));
+            }
+        }
+        List<String> additionalFolders = config.getList("additionalFolder")
+                .stream()
+                .filter(String.class::isInstance)
+                .map(String.class::cast)
+                .toList();
+        return new RenameSettings(CONCURRENCY_ADAPTIVE.equals(config.getString("concurrency", "fixed")),
+                Math.max(1, config.getInt("targetLatency", DEFAULT_TARGET_LATENCY)),
+                Math.max(1, config.getInt("maxConcurrency", DEFAULT_MAX_CONCURRENCY)),
+                Math.max(1, config.getInt("folderThreads", DEFAULT_FOLDER_THREADS)),
+                config.getBoolean("useVirtualThreads", false),
+                config.getString("recoveryMode", "resume"),
+                config.getString("metsUpdate", "ugh"),
+                config.getString("renameMode", "move"),
+                config.getString("order", "listing"),
+                config.getString("numbering", "all"),
+                config.getBoolean("rewriteOcrReferences", false),
+                config.getString("checksumAlgorithm", ""),
+                config.getString("checksumManifest", DEFAULT_CHECKSUM_MANIFEST),
+                config.getBoolean("checksumsToMets", false),
+                config.getBoolean("reuseMetsChecksums", false),
+                config.getBoolean("journalSummary", false),
+                config.getBoolean("async", false),
+                Math.max(1, config.getInt("s3Concurrency", DEFAULT_S3_CONCURRENCY)),
+                Math.max(1, config.getInt("crossDeviceThreads", DEFAULT_CROSS_DEVICE_THREADS)),
+                config.getBoolean("recursive", false),
+                Math.max(1, config.getInt("treeThreads", DEFAULT_TREE_THREADS)),
+                format,
+                config.getString("mainImageFolder", "{tifpath}"),
+                config.getString("namingTemplate", DEFAULT_NAMING_TEMPLATE),
+                folderSuffixes,
+                additionalFolders);
+    }
+}
@@ -0,0 +1,127 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Timings and counters of one run of the plugin: duration of every phase, throughput of every folder, collisions and moves through the temp folder,
+ * and the number of bytes that were read or written. The numbers are summed up in {@link RenameMetrics} and can be written to the journal as one
+ * summary entry.
+ */
+public class RenameStatistics {
+
+    /**
+     * numbers of one folder
+     */
+    public record FolderStatistics(String folder, int filesRenamed, int collisions, int tempMoves, long millis) {
+
+        /**
+         * @return renamed files per second, or 0 if the folder took no measurable time
+         */
+        public long filesPerSecond() {
+            return millis == 0 ? 0 : filesRenamed * 1000L / millis;
+        }
+    }
+
+    private final long start = System.nanoTime();
+
+    // duration of every phase in milliseconds, in the order in which the phases were finished
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final List<FolderStatistics> folders = new ArrayList<>();
+    @Getter
+    private long bytesTouched;
+
+    /**
+     * record the end of a phase
+     *
+     * @param phase name of the phase
+     * @param startNanos value of System.nanoTime() at the beginning of the phase
+     */
+    public synchronized void phaseFinished(String phase, long startNanos) {
+        phases.merge(phase, (System.nanoTime() - startNanos) / 1_000_000, Long::sum);
+    }
+
+    /**
+     * record a phase that was measured elsewhere
+     *
+     * @param phase name of the phase
+     * @param millis duration of the phase
+     */
+    public synchronized void phase(String phase, long millis) {
+        phases.merge(phase, millis, Long::sum);
+    }
+
+    public synchronized void folderRenamed(FolderStatistics folder) {
+        folders.add(folder);
+    }
+
+    public synchronized void addBytes(long bytes) {
+        bytesTouched += bytes;
+    }
+
+    public synchronized Map<String, Long> getPhases() {
+        return new LinkedHashMap<>(phases);
+    }
+
+    public synchronized List<FolderStatistics> getFolders() {
+        return new ArrayList<>(folders);
+    }
+
+    /**
+     * @return milliseconds since the statistics were created
+     */
+    public long getElapsedMillis() {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    public synchronized long getFilesRenamed() {
+        return folders.stream().mapToLong(FolderStatistics::filesRenamed).sum();
+    }
+
+    public synchronized long getCollisions() {
+        return folders.stream().mapToLong(FolderStatistics::collisions).sum();
+    }
+
+    public synchronized long getTempMoves() {
+        return folders.stream().mapToLong(FolderStatistics::tempMoves).sum();
+    }
+
+    /**
+     * @return all numbers as one text with one line per section, meant for the journal
+     */
+    public synchronized String toSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("renamed %s files in %s folders in %s ms, %s collisions, %s temp moves, %s bytes touched", getFilesRenamed(),
+                folders.size(), getElapsedMillis(), getCollisions(), getTempMoves(), bytesTouched));
+        summary.append(System.lineSeparator()).append("phases:");
+        phases.forEach((phase, millis) -> summary.append(' ').append(phase).append('=').append(millis).append(" ms"));
+        for (FolderStatistics folder : folders) {
+            summary.append(System.lineSeparator())
+                    .append(String.format("%s: %s files in %s ms (%s files/s), %s collisions, %s temp moves", folder.folder(), folder.filesRenamed(),
+                            folder.millis(), folder.filesPerSecond(), folder.collisions(), folder.tempMoves()));
+        }
+        return summary.toString();
+    }
+}
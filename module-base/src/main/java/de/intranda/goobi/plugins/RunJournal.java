@@ -0,0 +1,86 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+import java.util.Date;
+
+import org.goobi.beans.JournalEntry;
+import org.goobi.beans.JournalEntry.EntryType;
+import org.goobi.production.enums.LogType;
+
+import de.sub.goobi.persistence.managers.JournalManager;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Writes the journal entries of one run of the process. Every entry is saved as soon as it is added, so the entries of a run that is cut short,
+ * e.g. by a restart of Goobi, are not lost. To keep the number of entries of large runs down, the entries about single folders can be replaced by
+ * one summary entry at the end of the run, as the summary of {@link RenameStatistics} contains them as well.
+ */
+@Log4j2
+public class RunJournal {
+
+    private final Integer processId;
+    private final String userName;
+    // true if the entries about single folders are replaced by one summary entry
+    private final boolean summarize;
+
+    public RunJournal(Integer processId, String userName, boolean summarize) {
+        this.processId = processId;
+        this.userName = userName;
+        this.summarize = summarize;
+    }
+
+    /**
+     * save an entry
+     *
+     * @param message the content of the entry
+     * @param type the type of the entry
+     */
+    public void add(String message, LogType type) {
+        try {
+            JournalManager.saveJournalEntry(new JournalEntry(processId, new Date(), userName, type, message, EntryType.PROCESS));
+        } catch (RuntimeException e) {
+            log.error("Error saving journal entry for process {}: {}", processId, e.toString());
+        }
+    }
+
+    /**
+     * save the result of renaming one folder, unless the folders are only part of the summary
+     *
+     * @param folder path as string of the folder
+     * @param filesRenamed number of files that got a new name
+     */
+    public void folderRenamed(String folder, int filesRenamed) {
+        if (!summarize) {
+            add(String.format("renamed %s files in %s", filesRenamed, folder), LogType.DEBUG);
+        }
+    }
+
+    /**
+     * save the summary of the run, if summaries are wanted
+     *
+     * @param summary the summary of the run
+     */
+    public void summary(String summary) {
+        if (summarize) {
+            add(summary, LogType.DEBUG);
+        }
+    }
+}
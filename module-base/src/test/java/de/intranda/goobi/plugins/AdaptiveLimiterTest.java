@@ -0,0 +1,85 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class AdaptiveLimiterTest {
+
+    private static final long FAST = 1_000_000L;
+    private static final long SLOW = 200_000_000L;
+
+    @Test
+    public void testAdditiveIncrease() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 50, 6);
+        assertEquals(4, limiter.getLimit());
+        window(limiter, 0);
+        assertEquals(5, limiter.getLimit());
+        window(limiter, 0);
+        window(limiter, 0);
+        assertEquals(6, limiter.getLimit());
+    }
+
+    @Test
+    public void testMultiplicativeDecrease() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 50, 32);
+        window(limiter, 0);
+        window(limiter, 0);
+        assertEquals(6, limiter.getLimit());
+        // one slow move in a window is still below the 99th percentile
+        window(limiter, 1);
+        assertEquals(7, limiter.getLimit());
+        window(limiter, 2);
+        assertEquals(3, limiter.getLimit());
+        window(limiter, AdaptiveLimiter.WINDOW);
+        window(limiter, AdaptiveLimiter.WINDOW);
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void testConfigurationChangeIsApplied() {
+        AdaptiveLimiter limiter = AdaptiveLimiter.forRoot("testConfigurationChangeIsApplied", 50, 32);
+        window(limiter, 0);
+        window(limiter, 0);
+        assertEquals(6, limiter.getLimit());
+        // a lower maximum lowers the limit at once
+        assertSame(limiter, AdaptiveLimiter.forRoot("testConfigurationChangeIsApplied", 50, 5));
+        assertEquals(5, limiter.getLimit());
+        window(limiter, 0);
+        assertEquals(5, limiter.getLimit());
+        // slow moves are fast enough for a higher target
+        AdaptiveLimiter.forRoot("testConfigurationChangeIsApplied", 500, 5);
+        window(limiter, AdaptiveLimiter.WINDOW);
+        assertEquals(5, limiter.getLimit());
+    }
+
+    /**
+     * record one window of moves, the given number of them slow
+     */
+    private static void window(AdaptiveLimiter limiter, int slow) {
+        for (int i = 0; i < AdaptiveLimiter.WINDOW; ++i) {
+            limiter.record(i < slow ? SLOW : FAST);
+        }
+    }
+}
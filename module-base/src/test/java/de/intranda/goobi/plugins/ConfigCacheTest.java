@@ -0,0 +1,69 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ConfigCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testUnchangedFileIsReadOnce() throws Exception {
+        Path file = Files.writeString(folder.getRoot().toPath().resolve("plugin.xml"), "<config/>");
+        AtomicInteger reads = new AtomicInteger();
+        Object first = ConfigCache.get(file, "testUnchangedFileIsReadOnce", () -> reads.incrementAndGet());
+        Object second = ConfigCache.get(file, "testUnchangedFileIsReadOnce", () -> reads.incrementAndGet());
+        assertSame(first, second);
+        assertEquals(1, reads.get());
+    }
+
+    @Test
+    public void testChangedFileInvalidatesTheCache() throws Exception {
+        Path file = Files.writeString(folder.getRoot().toPath().resolve("plugin.xml"), "<config/>");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000000000000L));
+        Object first = ConfigCache.get(file, "testChangedFileInvalidatesTheCache", Object::new);
+
+        // a new size
+        Files.writeString(file, "<config><async>true</async></config>");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000000000000L));
+        Object second = ConfigCache.get(file, "testChangedFileInvalidatesTheCache", Object::new);
+        assertNotSame(first, second);
+
+        // the same size, but a new modification time
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000000001000L));
+        Object third = ConfigCache.get(file, "testChangedFileInvalidatesTheCache", Object::new);
+        assertNotSame(second, third);
+        assertSame(third, ConfigCache.get(file, "testChangedFileInvalidatesTheCache", Object::new));
+    }
+}
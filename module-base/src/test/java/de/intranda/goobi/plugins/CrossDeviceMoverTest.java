@@ -0,0 +1,145 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CrossDeviceMoverTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMoveKeepsContentAndTime() throws Exception {
+        byte[] content = new byte[3 * 1024 * 1024 + 17];
+        new Random(42).nextBytes(content);
+        Path source = folder.getRoot().toPath().resolve("a.tif");
+        Files.write(source, content);
+        Files.setLastModifiedTime(source, FileTime.fromMillis(1000000000000L));
+        Path target = folder.newFolder("temp").toPath().resolve("b.tif");
+
+        assertEquals(content.length, CrossDeviceMover.move(source, target));
+
+        assertFalse(Files.exists(source));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(1000000000000L, Files.getLastModifiedTime(target).toMillis());
+        assertFalse(Files.exists(target.resolveSibling(".b.tif.part")));
+    }
+
+    @Test
+    public void testExistingTargetKeepsSource() throws Exception {
+        Path source = Files.writeString(folder.getRoot().toPath().resolve("a.tif"), "a");
+        Path target = Files.writeString(folder.getRoot().toPath().resolve("b.tif"), "b");
+        try {
+            CrossDeviceMover.move(source, target);
+            fail();
+        } catch (FileSystemException e) {
+            assertTrue(Files.exists(source));
+            assertEquals("b", Files.readString(target));
+        }
+    }
+
+    @Test
+    public void testCorruptedCopyKeepsSource() throws Exception {
+        byte[] content = new byte[1024 * 1024 + 5];
+        new Random(3).nextBytes(content);
+        Path source = Files.write(folder.getRoot().toPath().resolve("a.tif"), content);
+        Path target = folder.newFolder("temp").toPath().resolve("b.tif");
+        Path part = target.resolveSibling(".b.tif.part");
+        // the copy is damaged after it was written, e.g. by a faulty storage, which only the read-back finds
+        CrossDeviceMover.Checksum damagingChecksum = file -> {
+            if (file.equals(part)) {
+                byte[] copy = Files.readAllBytes(file);
+                copy[copy.length / 2] ^= 1;
+                Files.write(file, copy);
+            }
+            return CrossDeviceMover.checksum(file);
+        };
+        try {
+            CrossDeviceMover.move(source, target, damagingChecksum);
+            fail();
+        } catch (IOException e) {
+            assertArrayEquals(content, Files.readAllBytes(source));
+            assertFalse(Files.exists(target));
+            assertFalse(Files.exists(part));
+        }
+    }
+
+    @Test
+    public void testMoveToAnotherFileSystem() throws Exception {
+        // /dev/shm is a tmpfs on Linux, the move into it and back is a real copy between two file systems
+        Path shm = Path.of("/dev/shm");
+        Path root = folder.getRoot().toPath();
+        assumeTrue(Files.isDirectory(shm) && Files.isWritable(shm) && CrossDeviceMover.crossesFileStores(root, shm));
+        byte[] content = new byte[5 * 1024 * 1024 + 3];
+        new Random(7).nextBytes(content);
+        Path source = Files.write(root.resolve("a.tif"), content);
+        Path parked = Files.createTempDirectory(shm, "rename-test").resolve("a.tif");
+        try {
+            assertEquals(content.length, CrossDeviceMover.move(source, parked));
+            assertFalse(Files.exists(source));
+            assertEquals(crcOf(content), CrossDeviceMover.checksum(parked));
+
+            Path target = root.resolve("b.tif");
+            assertEquals(content.length, CrossDeviceMover.move(parked, target));
+            assertFalse(Files.exists(parked));
+            assertArrayEquals(content, Files.readAllBytes(target));
+        } finally {
+            Files.deleteIfExists(parked);
+            Files.deleteIfExists(parked.getParent());
+        }
+    }
+
+    @Test
+    public void testChecksum() throws Exception {
+        byte[] content = "some content".getBytes();
+        Path file = Files.write(folder.getRoot().toPath().resolve("a.tif"), content);
+        assertEquals(crcOf(content), CrossDeviceMover.checksum(file));
+    }
+
+    @Test
+    public void testSameFileStore() throws Exception {
+        assertFalse(CrossDeviceMover.crossesFileStores(folder.getRoot().toPath(), folder.newFolder("temp").toPath()));
+    }
+
+    private static long crcOf(byte[] content) {
+        CRC32C crc = new CRC32C();
+        crc.update(content);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,143 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FixityChecksumsTest {
+
+    private static final String HELLO_MD5 = "5d41402abc4b2a76b9719d911017c592";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path processFolder;
+    private Path mediaFolder;
+
+    @Before
+    public void setUp() throws Exception {
+        processFolder = folder.getRoot().toPath().toRealPath();
+        mediaFolder = Files.createDirectories(processFolder.resolve("images/title_media"));
+        Files.writeString(mediaFolder.resolve("title_0001.tif"), "hello", StandardCharsets.UTF_8);
+        Files.writeString(mediaFolder.resolve("title_0002.tif"), "hello", StandardCharsets.UTF_8);
+        Files.writeString(mediaFolder.resolve(".hidden"), "hello", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testComputeChecksumsAndManifest() throws Exception {
+        Path manifest = processFolder.resolve("manifest-md5.txt");
+        try (FixityChecksums checksums = new FixityChecksums("MD5", 2)) {
+            checksums.submitFolder(mediaFolder);
+            checksums.await();
+            checksums.writeManifest(manifest, processFolder);
+
+            assertEquals(HELLO_MD5, checksums.getChecksum(mediaFolder.resolve("title_0001.tif").toUri().toString()));
+            assertNull(checksums.getChecksum(mediaFolder.resolve(".hidden").toString()));
+            assertEquals(10, checksums.getBytesRead());
+        }
+        assertEquals(List.of(HELLO_MD5 + "  images/title_media/title_0001.tif", HELLO_MD5 + "  images/title_media/title_0002.tif"),
+                Files.readAllLines(manifest, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReuseChecksumsOfUnchangedFiles() throws Exception {
+        Path metsFile = processFolder.resolve("meta.xml");
+        StringBuilder mets = new StringBuilder("<mets:mets xmlns:mets=\"http://www.loc.gov/METS/\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">");
+        for (String name : List.of("old_1.tif", "old_2.tif")) {
+            mets.append("<mets:file ID=\"FILE\" CHECKSUM=\"0123456789ABCDEF\" CHECKSUMTYPE=\"MD5\" SIZE=\"5\"><mets:FLocat xlink:href=\"")
+                    .append(mediaFolder.resolve(name).toUri())
+                    .append("\"/></mets:file>");
+        }
+        Files.writeString(metsFile, mets.append("</mets:mets>"), StandardCharsets.UTF_8);
+        // the second file was changed after the METS file was written
+        Files.setLastModifiedTime(mediaFolder.resolve("title_0001.tif"), FileTime.fromMillis(1000000000000L));
+        Files.setLastModifiedTime(metsFile, FileTime.fromMillis(2000000000000L));
+        Files.setLastModifiedTime(mediaFolder.resolve("title_0002.tif"), FileTime.fromMillis(3000000000000L));
+
+        try (FixityChecksums checksums = new FixityChecksums("MD5", 2, true)) {
+            checksums.readMets(metsFile, location -> location.replace("old_", "title_000"));
+            checksums.submitFolder(mediaFolder);
+            checksums.await();
+
+            assertEquals("0123456789abcdef", checksums.getChecksum(mediaFolder.resolve("title_0001.tif").toString()));
+            assertEquals(HELLO_MD5, checksums.getChecksum(mediaFolder.resolve("title_0002.tif").toString()));
+            assertEquals(1, checksums.getReused());
+        }
+    }
+
+    @Test
+    public void testChangedContentWithSameSizeAndTimeIsRead() throws Exception {
+        // the checksum in the METS file belongs to other content of the same size, e.g. a file that was restored with its old time
+        Path metsFile = writeMets("0123456789ABCDEF", " SIZE=\"5\"");
+        try (FixityChecksums checksums = new FixityChecksums("MD5", 2)) {
+            checksums.readMets(metsFile, UnaryOperator.identity());
+            checksums.submitFolder(mediaFolder);
+            checksums.await();
+
+            assertEquals(HELLO_MD5, checksums.getChecksum(mediaFolder.resolve("title_0001.tif").toString()));
+            assertEquals(0, checksums.getReused());
+        }
+    }
+
+    @Test
+    public void testChecksumWithoutSizeIsNotReused() throws Exception {
+        Path metsFile = writeMets("0123456789ABCDEF", "");
+        try (FixityChecksums checksums = new FixityChecksums("MD5", 2, true)) {
+            checksums.readMets(metsFile, UnaryOperator.identity());
+            checksums.submitFolder(mediaFolder);
+            checksums.await();
+
+            assertEquals(HELLO_MD5, checksums.getChecksum(mediaFolder.resolve("title_0001.tif").toString()));
+            assertEquals(0, checksums.getReused());
+        }
+    }
+
+    /**
+     * write a METS file with a checksum for title_0001.tif, which was not modified after it
+     */
+    private Path writeMets(String checksum, String sizeAttribute) throws Exception {
+        Path metsFile = processFolder.resolve("meta.xml");
+        Files.writeString(metsFile, "<mets:mets xmlns:mets=\"http://www.loc.gov/METS/\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">"
+                + "<mets:file ID=\"FILE\" CHECKSUM=\"" + checksum + "\" CHECKSUMTYPE=\"MD5\"" + sizeAttribute + "><mets:FLocat xlink:href=\""
+                + mediaFolder.resolve("title_0001.tif").toUri() + "\"/></mets:file></mets:mets>", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(mediaFolder.resolve("title_0001.tif"), FileTime.fromMillis(1000000000000L));
+        Files.setLastModifiedTime(metsFile, FileTime.fromMillis(2000000000000L));
+        return metsFile;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownAlgorithm() {
+        new FixityChecksums("CRC-7", 1);
+    }
+}
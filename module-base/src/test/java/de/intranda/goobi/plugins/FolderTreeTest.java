@@ -0,0 +1,110 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FolderTreeTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testWalkSubfolders() throws IOException {
+        Path root = tempFolder.newFolder("ocr").toPath();
+        Files.createFile(root.resolve("a.xml"));
+        Files.createDirectories(root.resolve("a/tiles.dzi/0"));
+        Files.createFile(root.resolve("a/a.txt"));
+        Files.createFile(root.resolve("a/tiles.dzi/0/0_0.jpg"));
+        Files.createFile(root.resolve("a/tiles.dzi/0/0_1.jpg"));
+        Files.createDirectories(root.resolve("b/temp"));
+        Files.createFile(root.resolve("b/temp/parked.txt"));
+        Files.createDirectories(root.resolve(".hidden"));
+
+        Map<String, String> visited = new TreeMap<>();
+        FolderTree.walkSubfolders(root, "temp", 4, snapshot -> {
+            synchronized (visited) {
+                visited.put(root.relativize(snapshot.getFolder()).toString().replace('\\', '/'), String.join(",", snapshot.getFileNames()));
+            }
+        });
+
+        assertEquals(Map.of("a", "a.txt", "a/tiles.dzi", "", "a/tiles.dzi/0", "0_0.jpg,0_1.jpg", "b", ""), visited);
+    }
+
+    @Test
+    public void testLinksToFoldersAreSkipped() throws IOException {
+        Path root = tempFolder.newFolder("ocr").toPath();
+        Path outside = tempFolder.newFolder("outside").toPath();
+        Files.createFile(outside.resolve("foreign.xml"));
+        Files.createFile(root.resolve("a.xml"));
+        Files.createDirectories(root.resolve("a"));
+        Files.createFile(root.resolve("a/a.txt"));
+        try {
+            Files.createSymbolicLink(root.resolve("linked"), outside);
+            Files.createSymbolicLink(root.resolve("a/linked"), outside);
+        } catch (UnsupportedOperationException | IOException e) {
+            assumeTrue("symbolic links are not supported here", false);
+        }
+
+        assertEquals(List.of("a.xml"), FolderSnapshot.read(root, "temp").getFileNames());
+        List<Path> subfolders = new ArrayList<>();
+        assertEquals(List.of("a.xml"), FolderSnapshot.read(root, "temp", subfolders::add).getFileNames());
+        assertEquals(List.of(root.resolve("a")), subfolders);
+
+        Map<String, String> visited = new TreeMap<>();
+        FolderTree.walkSubfolders(root, "temp", 2, snapshot -> {
+            synchronized (visited) {
+                visited.put(root.relativize(snapshot.getFolder()).toString().replace('\\', '/'), String.join(",", snapshot.getFileNames()));
+            }
+        });
+        assertEquals(Map.of("a", "a.txt"), visited);
+    }
+
+    @Test
+    public void testErrorStopsTheWalk() throws IOException {
+        Path root = tempFolder.newFolder("ocr").toPath();
+        Files.createDirectories(root.resolve("a"));
+
+        try {
+            FolderTree.walkSubfolders(root, "temp", 2, snapshot -> {
+                throw new IOException("cannot rename " + snapshot.getFolder().getFileName());
+            });
+            fail("the error of the action is passed on");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("cannot rename a"));
+        }
+    }
+}
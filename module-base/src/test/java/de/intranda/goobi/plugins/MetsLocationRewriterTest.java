@@ -0,0 +1,99 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MetsLocationRewriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path metsFile;
+
+    @Before
+    public void setUp() throws Exception {
+        String resourcesFolder = "src/test/resources/";
+        if (!Files.exists(Paths.get(resourcesFolder))) {
+            resourcesFolder = "target/test-classes/";
+        }
+        metsFile = folder.getRoot().toPath().resolve("meta.xml");
+        Files.copy(Paths.get(resourcesFolder, "meta.xml"), metsFile);
+    }
+
+    @Test
+    public void testRewriteLocations() throws Exception {
+        int changed = new MetsLocationRewriter().rewrite(metsFile, location -> location.replace("/00000010.tif", "/renamed_0001.tif"));
+
+        assertEquals(1, changed);
+        String content = Files.readString(metsFile, StandardCharsets.UTF_8);
+        assertTrue(content.contains("processtitle_media/renamed_0001.tif"));
+        assertFalse(content.contains("processtitle_media/00000010.tif"));
+        assertTrue(content.contains("processtitle_media/00000011.tif"));
+        assertTrue(Files.exists(metsFile.resolveSibling("meta.xml.1")));
+    }
+
+    @Test
+    public void testUnchangedFileIsNotWritten() throws Exception {
+        byte[] before = Files.readAllBytes(metsFile);
+        int changed = new MetsLocationRewriter().rewrite(metsFile, location -> location);
+
+        assertEquals(0, changed);
+        assertEquals(new String(before, StandardCharsets.UTF_8), Files.readString(metsFile, StandardCharsets.UTF_8));
+        assertFalse(Files.exists(metsFile.resolveSibling("meta.xml.1")));
+    }
+
+    @Test
+    public void testSetChecksums() throws Exception {
+        int changed = new MetsLocationRewriter().rewrite(metsFile, location -> location.replace("/00000010.tif", "/renamed_0001.tif"),
+                location -> location.endsWith("/renamed_0001.tif") ? "5d41402abc4b2a76b9719d911017c592" : null, "MD5");
+
+        assertEquals(2, changed);
+        String content = Files.readString(metsFile, StandardCharsets.UTF_8);
+        String firstFile = fileElement(content, "FILE_0001");
+        assertTrue(firstFile.contains("CHECKSUM=\"5d41402abc4b2a76b9719d911017c592\""));
+        assertTrue(firstFile.contains("CHECKSUMTYPE=\"MD5\""));
+        assertFalse(fileElement(content, "FILE_0002").contains("CHECKSUM"));
+        assertTrue(content.contains("processtitle_media/renamed_0001.tif"));
+    }
+
+    @Test
+    public void testNumberedBackups() throws Exception {
+        String original = Files.readString(metsFile, StandardCharsets.UTF_8);
+        MetsLocationRewriter rewriter = new MetsLocationRewriter(2);
+        rewriter.rewrite(metsFile, location -> location.replace("/00000010.tif", "/renamed_0001.tif"));
+        String renamedOnce = Files.readString(metsFile, StandardCharsets.UTF_8);
+        rewriter.rewrite(metsFile, location -> location.replace("/renamed_0001.tif", "/renamed_0002.tif"));
+        rewriter.rewrite(metsFile, location -> location.replace("/renamed_0002.tif", "/renamed_0003.tif"));
+
+        assertTrue(Files.readString(metsFile.resolveSibling("meta.xml.1"), StandardCharsets.UTF_8).contains("/renamed_0002.tif"));
+        assertEquals(renamedOnce, Files.readString(metsFile.resolveSibling("meta.xml.2"), StandardCharsets.UTF_8));
+        // the original is beyond the number of backups
+        assertFalse(Files.exists(metsFile.resolveSibling("meta.xml.3")));
+        assertFalse(renamedOnce.equals(original));
+    }
+
+    @Test
+    public void testNoBackups() throws Exception {
+        new MetsLocationRewriter(0).rewrite(metsFile, location -> location.replace("/00000010.tif", "/renamed_0001.tif"));
+        assertFalse(Files.exists(metsFile.resolveSibling("meta.xml.1")));
+    }
+
+    private static String fileElement(String content, String id) {
+        Matcher matcher = Pattern.compile("<mets:file [^>]*ID=\"" + id + "\"[^>]*>").matcher(content);
+        assertTrue(matcher.find());
+        return matcher.group();
+    }
+}
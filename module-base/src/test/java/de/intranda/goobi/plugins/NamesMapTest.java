@@ -0,0 +1,82 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class NamesMapTest {
+
+    private static final NamesMap.NameRenderer RENDERER = (number, target) -> target.append("title_").append(String.format("%04d", number));
+
+    @Test
+    public void testNewNamesFollowListingOrder() {
+        NamesMap namesMap = NamesMap.create(List.of("c.tif", "a.tif", "b.tif"), RENDERER);
+
+        assertEquals(3, namesMap.size());
+        assertEquals("title_0001.tif", namesMap.getNewFileName("c.tif"));
+        assertEquals("title_0002.xml", namesMap.getNewFileName("a.xml"));
+        assertEquals("title_0003.jpg", namesMap.getNewFileName("b.jpg"));
+    }
+
+    @Test
+    public void testUnknownNamesAreKept() {
+        NamesMap namesMap = NamesMap.create(List.of("a.tif", "b.tif"), RENDERER);
+        String fileName = "ab.tif";
+
+        assertSame(fileName, namesMap.getNewFileName(fileName));
+        assertEquals("README", namesMap.getNewFileName("README"));
+        assertEquals("file:///x/a.b/c", namesMap.getNewLocation("file:///x/a.b/c"));
+    }
+
+    @Test
+    public void testLocations() {
+        NamesMap namesMap = NamesMap.create(List.of("a.tif", "b.tif"), RENDERER);
+
+        assertEquals("file:///data/1/images/p_media/title_0002.tif", namesMap.getNewLocation("file:///data/1/images/p_media/b.tif"));
+        assertEquals("title_0001.tif", namesMap.getNewLocation("a.tif"));
+    }
+
+    @Test
+    public void testLastFileWithTheSameStemCounts() {
+        NamesMap namesMap = NamesMap.create(List.of("a.jpg", "a.tif", "b.tif"), RENDERER);
+
+        assertEquals(2, namesMap.size());
+        assertEquals("title_0002.tif", namesMap.getNewFileName("a.tif"));
+        assertEquals("title_0003.tif", namesMap.getNewFileName("b.tif"));
+    }
+
+    @Test
+    public void testExplicitAndInverse() {
+        Map<String, String> map = new LinkedHashMap<>();
+        map.put("x", "y");
+        map.put("y", "z");
+        NamesMap namesMap = NamesMap.of(map);
+
+        assertEquals("y.tif", namesMap.getNewFileName("x.tif"));
+        assertEquals("z.tif", namesMap.getNewFileName("y.tif"));
+        NamesMap inverse = namesMap.inverse();
+        assertEquals("x.tif", inverse.getNewFileName("y.tif"));
+        assertEquals("y.tif", inverse.getNewFileName("z.tif"));
+        assertEquals("x.tif", NamesMap.create(List.of("x.tif"), RENDERER).inverse().getNewFileName("title_0001.tif"));
+    }
+
+    @Test
+    public void testFolderSuffixes() {
+        NamesMap namesMap = NamesMap.create(List.of("a.tif", "b.tif"), RENDERER).withFolderSuffixes(Map.of("p_alto", "_alto"));
+
+        assertEquals("title_0001_alto.xml", namesMap.forFolder("p_alto").getNewFileName("a.xml"));
+        assertEquals("title_0001.tif", namesMap.forFolder("p_media").getNewFileName("a.tif"));
+        assertEquals("file:///p/ocr/p_alto/title_0002_alto.xml", namesMap.getNewLocation("file:///p/ocr/p_alto/b.xml"));
+        assertEquals("file:///p/images/p_media/title_0002.tif", namesMap.getNewLocation("file:///p/images/p_media/b.tif"));
+
+        NamesMap inverse = namesMap.inverse();
+        assertEquals("file:///p/ocr/p_alto/b.xml", inverse.getNewLocation("file:///p/ocr/p_alto/title_0002_alto.xml"));
+        assertEquals("a.xml", inverse.forFolder("p_alto").getNewFileName("title_0001_alto.xml"));
+        assertEquals("title_0001.xml", inverse.forFolder("p_alto").getNewFileName("title_0001.xml"));
+    }
+}
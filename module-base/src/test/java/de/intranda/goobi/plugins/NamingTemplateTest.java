@@ -0,0 +1,84 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class NamingTemplateTest {
+
+    @Test
+    public void testDefaultPadding() {
+        NamingTemplate template = NamingTemplate.compile("title_{counter}", 4, literal -> literal);
+
+        assertEquals("title_0001", render(template, 1));
+        assertEquals("title_0123", render(template, 123));
+        assertEquals("title_12345", render(template, 12345));
+    }
+
+    @Test
+    public void testExplicitPaddingAndVariables() {
+        NamingTemplate template = NamingTemplate.compile("{meta.CatalogIDDigital}-{counter:000000}_p{counter:0}", 4,
+                literal -> literal.replace("{meta.CatalogIDDigital}", "PPN123"));
+
+        assertEquals("PPN123-000042_p42", render(template, 42));
+    }
+
+    @Test
+    public void testFits() {
+        NamingTemplate template = NamingTemplate.compile("{counter}_{counter:00}", 4, literal -> literal);
+
+        assertTrue(template.fits(99));
+        assertFalse(template.fits(100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTemplateWithoutCounter() {
+        NamingTemplate.compile("title", 4, literal -> literal);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVariableWithPath() {
+        NamingTemplate.compile("{processpath}_{counter}", 4, literal -> literal.replace("{processpath}", "/opt/digiverso"));
+    }
+
+    @Test
+    public void testParse() {
+        NamingTemplate template = NamingTemplate.compile("title_{counter}", 4, literal -> literal);
+
+        assertEquals(42, template.parse("title_0042"));
+        assertEquals(12345, template.parse("title_12345"));
+        assertEquals(-1, template.parse("title_042"));
+        assertEquals(-1, template.parse("title_0000"));
+        assertEquals(-1, template.parse("title_0042_alto"));
+        assertEquals(-1, template.parse("scan_0042"));
+    }
+
+    @Test
+    public void testAppendNumbers() {
+        NamingTemplate template = NamingTemplate.compile("title_{counter}", 4, literal -> literal);
+
+        // two late scans at the end, and title_0003 moved in front of title_0002
+        int[] numbers = template.appendNumbers(List.of("title_0001.tif", "title_0003.tif", "title_0002.tif", "title_0004.tif", "late_a.tif",
+                "late_b.tif"));
+
+        assertArrayEquals(new int[] { 1, 5, 2, 4, 6, 7 }, numbers);
+    }
+
+    @Test
+    public void testAppendNumbersWithoutRenamedFiles() {
+        NamingTemplate template = NamingTemplate.compile("title_{counter}", 4, literal -> literal);
+
+        assertArrayEquals(new int[] { 1, 0, 2 }, template.appendNumbers(List.of("a.tif", "b.jpg", "b.tif")));
+    }
+
+    private static String render(NamingTemplate template, int number) {
+        StringBuilder buffer = new StringBuilder();
+        template.render(number, buffer);
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,78 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OcrReferenceRewriterTest {
+
+    private static final String ALTO = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<alto xmlns=\"http://www.loc.gov/standards/alto/ns-v4#\"><Description><sourceImageInformation>"
+            + "<fileName>C:\\scans\\00000002.tif</fileName></sourceImageInformation></Description>"
+            + "<Layout><Page ID=\"p1\"><PrintSpace><TextBlock><TextLine><String CONTENT=\"fileName\"/></TextLine></TextBlock></PrintSpace></Page>"
+            + "</Layout></alto>";
+
+    private static final String PAGE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<PcGts xmlns=\"http://schema.primaresearch.org/PAGE/gts/pagecontent/2019-07-15\">"
+            + "<Page imageFilename=\"00000002.jpg\" imageWidth=\"100\" imageHeight=\"100\"/></PcGts>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final NamesMap imageNames = NamesMap.create(List.of("00000001.tif", "00000002.tif"),
+            (number, target) -> target.append("title_").append(String.format("%04d", number)));
+
+    @Test
+    public void testRewriteAlto() throws Exception {
+        Path file = write("title_0002.xml", ALTO);
+
+        int changed = new OcrReferenceRewriter().rewrite(file, r -> RenameFilesBeforeRosettaStepPlugin.getNewReference(r, "00000002", imageNames));
+
+        assertEquals(1, changed);
+        String content = Files.readString(file, StandardCharsets.UTF_8);
+        assertTrue(content.contains("<fileName>C:\\scans\\title_0002.tif</fileName>"));
+        assertTrue(content.contains("CONTENT=\"fileName\""));
+        assertFalse(Files.exists(file.resolveSibling(".title_0002.xml.tmp")));
+    }
+
+    @Test
+    public void testRewritePage() throws Exception {
+        Path file = write("title_0002.xml", PAGE);
+
+        int changed = new OcrReferenceRewriter().rewrite(file, r -> RenameFilesBeforeRosettaStepPlugin.getNewReference(r, "00000002", imageNames));
+
+        assertEquals(1, changed);
+        assertTrue(Files.readString(file, StandardCharsets.UTF_8).contains("imageFilename=\"title_0002.jpg\""));
+    }
+
+    @Test
+    public void testRepeatedRewriteChangesNothing() throws Exception {
+        Path file = write("title_0001.xml", ALTO.replace("00000002", "00000001"));
+        OcrReferenceRewriter rewriter = new OcrReferenceRewriter();
+
+        assertEquals(1, rewriter.rewrite(file, r -> RenameFilesBeforeRosettaStepPlugin.getNewReference(r, "00000001", imageNames)));
+        byte[] rewritten = Files.readAllBytes(file);
+        assertEquals(0, rewriter.rewrite(file, r -> RenameFilesBeforeRosettaStepPlugin.getNewReference(r, "00000001", imageNames)));
+        assertEquals(new String(rewritten, StandardCharsets.UTF_8), Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReferenceToAnotherImageIsKept() {
+        assertEquals("00000001.tif", RenameFilesBeforeRosettaStepPlugin.getNewReference("00000001.tif", "00000002", imageNames));
+    }
+
+    private Path write(String name, String content) throws Exception {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+}
@@ -0,0 +1,116 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PendingRunsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOnlyMarkedRunsAreQueuedAgain() throws IOException {
+        Path marked = folder.newFolder("1").toPath();
+        Path unmarked = folder.newFolder("2").toPath();
+        PendingRuns.mark(marked, 11);
+        assertTrue(PendingRuns.isMarked(marked));
+        assertEquals("11", Files.readString(marked.resolve(PendingRuns.FILE_NAME)));
+
+        List<Path> queued = new ArrayList<>();
+        PendingRuns runs = new PendingRuns();
+        assertEquals(1, runs.requeueOnce(() -> List.of(marked, unmarked), p -> p, queued::add));
+        assertEquals(List.of(marked), queued);
+
+        PendingRuns.unmark(marked);
+        assertFalse(PendingRuns.isMarked(marked));
+    }
+
+    @Test
+    public void testRunsAreQueuedAgainOnlyOnce() throws IOException {
+        Path marked = folder.newFolder("1").toPath();
+        PendingRuns.mark(marked, 11);
+        int[] lookups = new int[1];
+        PendingRuns runs = new PendingRuns();
+        PendingRuns.CandidateSource<Path> source = () -> {
+            lookups[0]++;
+            return List.of(marked);
+        };
+        assertEquals(1, runs.requeueOnce(source, p -> p, p -> {
+        }));
+        assertEquals(0, runs.requeueOnce(source, p -> p, p -> {
+        }));
+        assertEquals(1, lookups[0]);
+    }
+
+    @Test
+    public void testFailedLookupIsRetried() throws IOException {
+        Path marked = folder.newFolder("1").toPath();
+        PendingRuns.mark(marked, 11);
+        PendingRuns runs = new PendingRuns();
+        PendingRuns.CandidateSource<Path> unavailable = () -> {
+            throw new IOException("database not available");
+        };
+        assertEquals(0, runs.requeueOnce(unavailable, p -> p, p -> {
+        }));
+        assertEquals(1, runs.requeueOnce(() -> List.of(marked), p -> p, p -> {
+        }));
+    }
+
+    @Test
+    public void testFailingCandidateDoesNotStopTheOthers() throws IOException {
+        Path first = folder.newFolder("1").toPath();
+        Path second = folder.newFolder("2").toPath();
+        PendingRuns.mark(first, 11);
+        PendingRuns.mark(second, 12);
+        List<Path> queued = new ArrayList<>();
+        PendingRuns runs = new PendingRuns();
+        assertEquals(1, runs.requeueOnce(() -> List.of(first, second), p -> p, p -> {
+            if (p.equals(first)) {
+                throw new IllegalStateException("cannot initialize the step");
+            }
+            queued.add(p);
+        }));
+        assertEquals(List.of(second), queued);
+    }
+
+    @Test
+    public void testClaim() {
+        PendingRuns runs = new PendingRuns();
+        assertTrue(runs.claim(1));
+        assertFalse(runs.claim(1));
+        assertTrue(runs.claim(2));
+        runs.release(1);
+        assertTrue(runs.claim(1));
+    }
+}
@@ -0,0 +1,127 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.sub.goobi.helper.StorageProviderInterface;
+
+public class PlanExecutorTest {
+
+    private static final List<String> FILES = List.of("1.tif", "2.tif", "3.tif", "a.tif", "b.tif");
+    // 1 -> 2 -> 3 -> 4 is one chain, a -> c and b -> d are chains of their own
+    private static final Map<String, String> NAMES = Map.of("1", "2", "2", "3", "3", "4", "a", "c", "b", "d");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // moves in the order in which the storage executed them
+    private final List<RenamePlan.Move> executed = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    // released once as many moves as there are chains are in flight at the same time
+    private final CountDownLatch allChainsStarted = new CountDownLatch(3);
+
+    @Test
+    public void testChainsRunConcurrentlyAndMovesInOrder() throws Exception {
+        Path media = folder.newFolder("media").toPath();
+        for (String file : FILES) {
+            Files.writeString(media.resolve(file), file, StandardCharsets.UTF_8);
+        }
+        RenamePlan plan = RenamePlan.create(FILES, n -> NAMES.get(n.substring(0, n.indexOf('.'))) + ".tif", PlanExecutor.TEMP_FOLDER);
+        assertEquals(3, plan.getChains().size());
+
+        RenameJournal journal = new RenameJournal(folder.getRoot().toPath().resolve(RenameJournal.FILE_NAME));
+        journal.begin(NamesMap.of(NAMES));
+        RenameProgress progress = new RenameProgress();
+        progress.folderStarted("media", FILES.size());
+        PlanExecutor executor = new PlanExecutor(slowStorage(), journal, new RenameStatistics(), progress);
+        ExecutorService chainExecutor = Executors.newFixedThreadPool(3);
+        try {
+            executor.setChainExecutor(chainExecutor);
+            executor.execute(media.toString(), FolderSnapshot.read(media, PlanExecutor.TEMP_FOLDER), plan, "media");
+        } finally {
+            chainExecutor.shutdownNow();
+            journal.delete();
+        }
+
+        assertEquals(3, maxInFlight.get());
+        for (List<RenamePlan.Move> chain : plan.getChains()) {
+            int previous = -1;
+            for (RenamePlan.Move move : chain) {
+                int position = executed.indexOf(move);
+                assertTrue(move + " is executed after the move before it in its chain", position > previous);
+                previous = position;
+            }
+        }
+        assertEquals("1.tif", Files.readString(media.resolve("2.tif"), StandardCharsets.UTF_8));
+        assertEquals("2.tif", Files.readString(media.resolve("3.tif"), StandardCharsets.UTF_8));
+        assertEquals("3.tif", Files.readString(media.resolve("4.tif"), StandardCharsets.UTF_8));
+        assertEquals("a.tif", Files.readString(media.resolve("c.tif"), StandardCharsets.UTF_8));
+        assertEquals("b.tif", Files.readString(media.resolve("d.tif"), StandardCharsets.UTF_8));
+        assertArrayEquals(new int[] { FILES.size(), FILES.size() }, progress.getTotal());
+    }
+
+    /**
+     * a storage with a high latency: the first move of every chain waits until the first moves of all chains are in flight, which only happens if
+     * the chains run at the same time
+     */
+    private StorageProviderInterface slowStorage() {
+        return (StorageProviderInterface) Proxy.newProxyInstance(PlanExecutorTest.class.getClassLoader(),
+                new Class<?>[] { StorageProviderInterface.class }, (proxy, method, args) -> {
+                    if (!"move".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    Path source = (Path) args[0];
+                    Path target = (Path) args[1];
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        allChainsStarted.countDown();
+                        allChainsStarted.await(10, TimeUnit.SECONDS);
+                        Files.move(source, target);
+                        executed.add(new RenamePlan.Move(source.getFileName().toString(), target.getFileName().toString()));
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,132 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PreflightTest {
+
+    private static final NamesMap.NameRenderer RENDERER = (number, target) -> target.append(String.format("title_%04d", number));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testValidFoldersArePlanned() throws Exception {
+        Path media = createFolder("title_media", "a.tif", "b.tif");
+        Path alto = createFolder("title_alto", "a.xml", "title_0002.xml");
+        NamesMap namesMap = NamesMap.create(List.of("a.tif", "b.tif"), RENDERER);
+
+        Preflight preflight = new Preflight(namesMap, "temp");
+        preflight.checkDerivateFolder(media.toString(), FolderSnapshot.read(media, "temp"));
+        preflight.checkFolder(alto.toString(), FolderSnapshot.read(alto, "temp"));
+
+        assertTrue(preflight.isValid());
+        // title_0002.xml was renamed by an earlier run
+        assertTrue(preflight.getWarnings().isEmpty());
+        assertEquals(List.of(media.toString(), alto.toString()), preflight.getFolders());
+        assertEquals(2, preflight.getFolder(media.toString()).plan().getFilesRenamed());
+        assertEquals(1, preflight.getFolder(alto.toString()).plan().getFilesRenamed());
+    }
+
+    @Test
+    public void testAllProblemsAreReported() throws Exception {
+        Path media = createFolder("title_media", "a.tif", "b.jpg", "b.tif", "c");
+        Path alto = createFolder("title_alto", "a.xml", "x.xml", "y");
+        NamesMap namesMap = NamesMap.create(List.of("a.tif", "b.jpg", "b.tif", "c"), RENDERER);
+
+        Preflight preflight = new Preflight(namesMap, "temp");
+        preflight.checkDerivateFolder(media.toString(), FolderSnapshot.read(media, "temp"));
+        preflight.checkFolder(alto.toString(), FolderSnapshot.read(alto, "temp"));
+        preflight.folderMissing("/missing");
+
+        assertFalse(preflight.isValid());
+        assertEquals(3, preflight.getErrors().size());
+        assertTrue(preflight.getErrors().get(0).contains("b.jpg and b.tif"));
+        assertTrue(preflight.getErrors().get(1).endsWith("have no suffix: c"));
+        assertTrue(preflight.getErrors().get(2).endsWith("have no suffix: y"));
+        assertEquals(2, preflight.getWarnings().size());
+        assertTrue(preflight.getWarnings().get(0).endsWith("keep their names: x.xml"));
+        assertTrue(preflight.getWarnings().get(1).contains("/missing"));
+    }
+
+    @Test
+    public void testCollisionIsAnError() throws Exception {
+        Path media = createFolder("title_media", "a.tif", "title_0002.tif");
+        NamesMap namesMap = NamesMap.of(Map.of("a", "title_0002"));
+
+        Preflight preflight = new Preflight(namesMap, "temp");
+        preflight.checkFolder(media.toString(), FolderSnapshot.read(media, "temp"));
+
+        assertFalse(preflight.isValid());
+        assertNull(preflight.getFolder(media.toString()));
+    }
+
+    @Test
+    public void testFilesLeftInTheTempFolderAreAnError() throws Exception {
+        Path media = createFolder("title_media", "a.tif", "b.tif");
+        Files.createDirectory(media.resolve("temp"));
+        Files.createFile(media.resolve("temp/title_0001.tif"));
+        NamesMap namesMap = NamesMap.create(List.of("a.tif", "b.tif"), RENDERER);
+
+        Preflight preflight = new Preflight(namesMap, "temp");
+        preflight.checkDerivateFolder(media.toString(), FolderSnapshot.read(media, "temp"));
+
+        assertFalse(preflight.isValid());
+        assertEquals(1, preflight.getErrors().size());
+        assertTrue(preflight.getErrors().get(0).endsWith("move them back or remove them: title_0001.tif"));
+    }
+
+    @Test
+    public void testFoldersWithADotAreNotPlanned() throws Exception {
+        Path media = createFolder("title_media", "a.tif", "b.tif");
+        Files.createDirectory(media.resolve("a.d"));
+        Files.createDirectory(media.resolve("v1.2"));
+        NamesMap namesMap = NamesMap.create(List.of("a.tif", "b.tif"), RENDERER);
+
+        Preflight preflight = new Preflight(namesMap, "temp");
+        preflight.checkDerivateFolder(media.toString(), FolderSnapshot.read(media, "temp"));
+
+        assertTrue(preflight.isValid());
+        assertEquals(List.of("a.tif", "b.tif"), preflight.getFolder(media.toString()).snapshot().getFileNames());
+        assertEquals(2, preflight.getFolder(media.toString()).plan().getFilesRenamed());
+    }
+
+    private Path createFolder(String name, String... fileNames) throws Exception {
+        Path path = folder.newFolder(name).toPath();
+        for (String fileName : fileNames) {
+            Files.createFile(path.resolve(fileName));
+        }
+        return path;
+    }
+}
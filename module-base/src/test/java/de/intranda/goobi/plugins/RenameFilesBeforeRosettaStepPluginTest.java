@@ -1,23 +1,31 @@
 package de.intranda.goobi.plugins;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.easymock.EasyMock;
+import org.goobi.beans.JournalEntry;
 import org.goobi.beans.Process;
 import org.goobi.beans.Project;
 import org.goobi.beans.Ruleset;
 import org.goobi.beans.Step;
 import org.goobi.beans.User;
+import org.goobi.production.enums.PluginReturnValue;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Ignore;
@@ -34,6 +42,7 @@ import de.sub.goobi.config.ConfigurationHelper;
 import de.sub.goobi.helper.VariableReplacer;
 import de.sub.goobi.helper.enums.StepStatus;
 import de.sub.goobi.metadaten.MetadatenHelper;
+import de.sub.goobi.persistence.managers.JournalManager;
 import de.sub.goobi.persistence.managers.MetadataManager;
 import de.sub.goobi.persistence.managers.ProcessManager;
 import ugh.dl.Fileformat;
@@ -42,7 +51,7 @@ import ugh.fileformats.mets.MetsMods;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest({ MetadatenHelper.class, VariableReplacer.class, ConfigurationHelper.class, ProcessManager.class,
-        MetadataManager.class })
+        MetadataManager.class, JournalManager.class })
 @PowerMockIgnore({ "javax.management.*", "javax.xml.*", "org.xml.*", "org.w3c.*", "javax.net.ssl.*", "jdk.internal.reflect.*" })
 public class RenameFilesBeforeRosettaStepPluginTest {
 
@@ -90,6 +99,100 @@ public class RenameFilesBeforeRosettaStepPluginTest {
         assertNotNull(s);
     }
 
+    @Test
+    public void testRenameAndRunAgain() throws Exception {
+        Path processFolder = processDirectory.toPath();
+        Path media = processFolder.resolve("images/00469418X_media");
+        Path alto = Files.createDirectories(processFolder.resolve("ocr/00469418X_alto"));
+        for (int i = 10; i < 20; ++i) {
+            Files.writeString(media.resolve("000000" + i + ".tif"), "image " + i, StandardCharsets.UTF_8);
+            Files.writeString(alto.resolve("000000" + i + ".xml"), "alto " + i, StandardCharsets.UTF_8);
+        }
+        PowerMock.mockStatic(JournalManager.class);
+        JournalManager.saveJournalEntry(EasyMock.anyObject(JournalEntry.class));
+        EasyMock.expectLastCall().anyTimes();
+        PowerMock.replay(JournalManager.class);
+        Step renameStep = createStepOfMockedProcess(processFolder);
+
+        RenameFilesBeforeRosettaStepPlugin plugin = new PluginWithoutVariables();
+        plugin.initialize(renameStep, "");
+        assertEquals(PluginReturnValue.FINISH, plugin.run());
+
+        List<String> newNames = IntStream.rangeClosed(1, 10).mapToObj(i -> String.format("00469418X_%04d", i)).collect(Collectors.toList());
+        assertEquals(withSuffix(newNames, ".tif"), list(media));
+        assertEquals(withSuffix(newNames, ".xml"), list(alto));
+        assertEquals("image 10", Files.readString(media.resolve("00469418X_0001.tif"), StandardCharsets.UTF_8));
+        assertEquals("alto 19", Files.readString(alto.resolve("00469418X_0010.xml"), StandardCharsets.UTF_8));
+        String mets = Files.readString(processFolder.resolve("meta.xml"), StandardCharsets.UTF_8);
+        for (String name : newNames) {
+            assertTrue(mets.contains("processtitle_media/" + name + ".tif\""));
+        }
+        assertFalse(mets.contains("00000010.tif"));
+        assertFalse(Files.exists(processFolder.resolve(RenameJournal.FILE_NAME)));
+        assertFalse(Files.exists(media.resolve("temp")));
+
+        // a second run finds everything renamed already and changes nothing
+        plugin = new PluginWithoutVariables();
+        plugin.initialize(renameStep, "");
+        assertEquals(PluginReturnValue.FINISH, plugin.run());
+
+        assertEquals(withSuffix(newNames, ".tif"), list(media));
+        assertEquals(withSuffix(newNames, ".xml"), list(alto));
+        assertEquals(mets, Files.readString(processFolder.resolve("meta.xml"), StandardCharsets.UTF_8));
+        assertFalse(Files.exists(processFolder.resolve(RenameJournal.FILE_NAME)));
+    }
+
+    /**
+     * the plugin without the VariableReplacer, which needs the database, so that the folders are taken from the process
+     */
+    private static class PluginWithoutVariables extends RenameFilesBeforeRosettaStepPlugin {
+        @Override
+        VariableReplacer createVariableReplacer(Process process) {
+            return null;
+        }
+    }
+
+    /**
+     * create a step in work of a process whose folders are in the given process folder
+     */
+    private Step createStepOfMockedProcess(Path processFolder) throws Exception {
+        Project project = new Project();
+        project.setTitel("SampleProject");
+        Process mockedProcess = EasyMock.createNiceMock(Process.class);
+        EasyMock.expect(mockedProcess.getId()).andReturn(1).anyTimes();
+        EasyMock.expect(mockedProcess.getTitel()).andReturn("00469418X").anyTimes();
+        EasyMock.expect(mockedProcess.getProjekt()).andReturn(project).anyTimes();
+        EasyMock.expect(mockedProcess.getProcessDataDirectory()).andReturn(processFolder + File.separator).anyTimes();
+        EasyMock.expect(mockedProcess.getMetadataFilePath()).andReturn(processFolder.resolve("meta.xml").toString()).anyTimes();
+        EasyMock.expect(mockedProcess.getImagesTifDirectory(false))
+                .andReturn(processFolder.resolve("images/00469418X_media") + File.separator)
+                .anyTimes();
+        EasyMock.expect(mockedProcess.getImagesOrigDirectory(false))
+                .andReturn(processFolder.resolve("images/00469418X_master") + File.separator)
+                .anyTimes();
+        EasyMock.expect(mockedProcess.getOcrAltoDirectory()).andReturn(processFolder.resolve("ocr/00469418X_alto") + File.separator).anyTimes();
+        EasyMock.expect(mockedProcess.getOcrPdfDirectory()).andReturn(processFolder.resolve("ocr/00469418X_pdf") + File.separator).anyTimes();
+        EasyMock.expect(mockedProcess.getOcrTxtDirectory()).andReturn(processFolder.resolve("ocr/00469418X_txt") + File.separator).anyTimes();
+        EasyMock.expect(mockedProcess.getOcrXmlDirectory()).andReturn(processFolder.resolve("ocr/00469418X_xml") + File.separator).anyTimes();
+        EasyMock.replay(mockedProcess);
+
+        Step renameStep = new Step();
+        renameStep.setTitel("test step");
+        renameStep.setProzess(mockedProcess);
+        renameStep.setBearbeitungsstatusEnum(StepStatus.INWORK);
+        return renameStep;
+    }
+
+    private static List<String> withSuffix(List<String> names, String suffix) {
+        return names.stream().map(name -> name + suffix).collect(Collectors.toList());
+    }
+
+    private static List<String> list(Path folder) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
     @Before
     public void setUp() throws Exception {
         metadataDirectory = folder.newFolder("metadata");
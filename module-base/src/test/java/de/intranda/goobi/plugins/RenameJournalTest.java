@@ -0,0 +1,289 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.sub.goobi.helper.StorageProviderInterface;
+
+public class RenameJournalTest {
+
+    private static final String TEMP = "temp";
+    // a chain (new.tif moves to the front) and a cycle (x and y swap)
+    private static final List<String> FILES = List.of("new.tif", "p_1.tif", "p_2.tif", "x.tif", "y.tif");
+    // steps of a folder swap: staged, old folder moved away, staging folder moved in, swap recorded, old folder removed
+    private static final int SWAP_STEPS = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path mediaFolder;
+    private Path journalFile;
+    private Map<String, String> namesMap;
+    private RenamePlan plan;
+    private StorageProviderInterface storageProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        prepareProcess("process");
+    }
+
+    private void prepareProcess(String processFolder) throws IOException {
+        Path processDirectory = folder.newFolder(processFolder).toPath();
+        mediaFolder = Files.createDirectory(processDirectory.resolve("media"));
+        journalFile = processDirectory.resolve(RenameJournal.FILE_NAME);
+        for (String file : FILES) {
+            Files.writeString(mediaFolder.resolve(file), file, StandardCharsets.UTF_8);
+        }
+        namesMap = new HashMap<>();
+        namesMap.put("new", "p_1");
+        namesMap.put("p_1", "p_2");
+        namesMap.put("p_2", "p_3");
+        namesMap.put("x", "y");
+        namesMap.put("y", "x");
+        plan = RenamePlan.create(FILES, n -> namesMap.get(n.substring(0, n.indexOf('.'))) + ".tif", TEMP);
+        storageProvider = localStorage();
+    }
+
+    @Test
+    public void testResumeAfterEveryMove() throws IOException {
+        int total = plan.getChains().stream().mapToInt(List::size).sum();
+        for (int interruptAfter = 0; interruptAfter <= total; ++interruptAfter) {
+            prepareProcess("resume_" + interruptAfter);
+            interruptedRun(interruptAfter);
+            RenameJournal journal = new RenameJournal(journalFile);
+            assertEquals(namesMap, journal.resume(storageProvider));
+            journal.delete();
+
+            assertEquals("new.tif", read("p_1.tif"));
+            assertEquals("p_1.tif", read("p_2.tif"));
+            assertEquals("p_2.tif", read("p_3.tif"));
+            assertEquals("x.tif", read("y.tif"));
+            assertEquals("y.tif", read("x.tif"));
+            assertFalse(Files.exists(mediaFolder.resolve(TEMP)));
+        }
+    }
+
+    @Test
+    public void testRollbackAfterEveryMove() throws IOException {
+        int total = plan.getChains().stream().mapToInt(List::size).sum();
+        for (int interruptAfter = 0; interruptAfter <= total; ++interruptAfter) {
+            prepareProcess("rollback_" + interruptAfter);
+            interruptedRun(interruptAfter);
+            new RenameJournal(journalFile).rollback(storageProvider);
+
+            for (String file : FILES) {
+                assertEquals(file, read(file));
+            }
+            assertEquals(FILES, list());
+        }
+    }
+
+    @Test
+    public void testResumeSwapAfterEveryStep() throws IOException {
+        for (int interruptAfter = 0; interruptAfter <= SWAP_STEPS; ++interruptAfter) {
+            prepareProcess("resume_swap_" + interruptAfter);
+            interruptedSwap(interruptAfter);
+            RenameJournal journal = new RenameJournal(journalFile);
+            assertEquals(namesMap, journal.resume(storageProvider));
+            journal.delete();
+
+            assertEquals("new.tif", read("p_1.tif"));
+            assertEquals("p_1.tif", read("p_2.tif"));
+            assertEquals("p_2.tif", read("p_3.tif"));
+            assertEquals("x.tif", read("y.tif"));
+            assertEquals("y.tif", read("x.tif"));
+            assertEquals(List.of("media"), listProcessFolder());
+        }
+    }
+
+    @Test
+    public void testRollbackSwapAfterEveryStep() throws IOException {
+        for (int interruptAfter = 0; interruptAfter <= SWAP_STEPS; ++interruptAfter) {
+            prepareProcess("rollback_swap_" + interruptAfter);
+            interruptedSwap(interruptAfter);
+            new RenameJournal(journalFile).rollback(storageProvider);
+
+            for (String file : FILES) {
+                assertEquals(file, read(file));
+            }
+            assertEquals(FILES, list());
+            assertEquals(List.of("media", RenameJournal.FILE_NAME), listProcessFolder());
+        }
+    }
+
+    @Test
+    public void testResumeFoldersNotReached() throws IOException {
+        Path ocrFolder = Files.createDirectory(mediaFolder.resolveSibling("ocr"));
+        for (String file : FILES) {
+            String xmlFile = file.replace(".tif", ".xml");
+            Files.writeString(ocrFolder.resolve(xmlFile), xmlFile, StandardCharsets.UTF_8);
+        }
+        // the run dies after the media folder, before the plan of the ocr folder is written
+        RenameJournal journal = new RenameJournal(journalFile);
+        journal.begin(NamesMap.of(namesMap), List.of(mediaFolder.toString(), ocrFolder.toString()), TEMP, false);
+        int[] ids = journal.planned(mediaFolder.toString(), plan);
+        Files.createDirectories(mediaFolder.resolve(TEMP));
+        for (int i = 0; i < ids.length; ++i) {
+            List<RenamePlan.Move> chain = plan.getChains().get(i);
+            for (int j = 0; j < chain.size(); ++j) {
+                Files.move(mediaFolder.resolve(chain.get(j).source()), mediaFolder.resolve(chain.get(j).target()));
+            }
+            journal.executed(ids[i], chain.size(), true);
+        }
+
+        journal = new RenameJournal(journalFile);
+        assertEquals(namesMap, journal.resume(storageProvider));
+        journal.delete();
+
+        assertEquals("new.tif", read("p_1.tif"));
+        assertEquals("x.tif", read("y.tif"));
+        assertEquals("new.xml", Files.readString(ocrFolder.resolve("p_1.xml"), StandardCharsets.UTF_8));
+        assertEquals("p_2.xml", Files.readString(ocrFolder.resolve("p_3.xml"), StandardCharsets.UTF_8));
+        assertEquals("x.xml", Files.readString(ocrFolder.resolve("y.xml"), StandardCharsets.UTF_8));
+        assertEquals("y.xml", Files.readString(ocrFolder.resolve("x.xml"), StandardCharsets.UTF_8));
+        assertFalse(Files.exists(ocrFolder.resolve(TEMP)));
+    }
+
+    @Test
+    public void testHeaderIsCompleteBeforeTheFirstChain() throws IOException {
+        RenameJournal journal = new RenameJournal(journalFile);
+        journal.begin(NamesMap.of(namesMap), List.of(mediaFolder.toString()), TEMP, false);
+        journal.planned(mediaFolder.toString(), plan);
+        journal.close();
+        assertTrue(journal.isStarted());
+
+        List<String> lines = Files.readAllLines(journalFile, StandardCharsets.UTF_8);
+        int begin = lines.indexOf("BEGIN\t" + namesMap.size() + "\t1");
+        assertEquals(namesMap.size() + 1, begin);
+        assertTrue(lines.get(begin + 1).startsWith("CHAIN\t"));
+
+        // the run dies while writing the names map
+        Files.write(journalFile, lines.subList(0, 3), StandardCharsets.UTF_8);
+        assertFalse(new RenameJournal(journalFile).isStarted());
+        // or in the middle of the BEGIN entry
+        Files.writeString(journalFile, String.join("\n", lines.subList(0, begin)) + "\nBEGIN\t5", StandardCharsets.UTF_8);
+        assertFalse(new RenameJournal(journalFile).isStarted());
+    }
+
+    /**
+     * swap the media folder like the plugin does, but stop after the given number of steps
+     */
+    private void interruptedSwap(int interruptAfter) throws IOException {
+        RenameJournal journal = new RenameJournal(journalFile);
+        journal.begin(NamesMap.of(namesMap));
+        FolderSwap swap = new FolderSwap(mediaFolder);
+        int id = journal.swapPlanned(mediaFolder.toString());
+        if (interruptAfter == 0) {
+            return;
+        }
+        swap.stage(FILES, NamesMap.of(namesMap)::getNewFileName);
+        if (interruptAfter == 1) {
+            return;
+        }
+        // the first of the two renames of the swap
+        Files.move(mediaFolder, mediaFolder.resolveSibling(".media.old"));
+        if (interruptAfter == 2) {
+            return;
+        }
+        Files.move(mediaFolder.resolveSibling(".media.staging"), mediaFolder);
+        if (interruptAfter == 3) {
+            return;
+        }
+        journal.swapped(id);
+        if (interruptAfter == 4) {
+            return;
+        }
+        swap.cleanUp();
+        journal.close();
+    }
+
+    /**
+     * execute the plan like the plugin does, but stop after the given number of moves without flushing the batched entries
+     */
+    private void interruptedRun(int interruptAfter) throws IOException {
+        RenameJournal journal = new RenameJournal(journalFile);
+        journal.begin(NamesMap.of(namesMap));
+        int[] ids = journal.planned(mediaFolder.toString(), plan);
+        Files.createDirectories(mediaFolder.resolve(TEMP));
+        int moves = 0;
+        for (int i = 0; i < ids.length; ++i) {
+            List<RenamePlan.Move> chain = plan.getChains().get(i);
+            for (int j = 0; j < chain.size(); ++j) {
+                if (moves++ == interruptAfter) {
+                    return;
+                }
+                RenamePlan.Move move = chain.get(j);
+                Files.move(mediaFolder.resolve(move.source()), mediaFolder.resolve(move.target()));
+                boolean parked = move.target().startsWith(TEMP + "/");
+                // unforced entries stay in the buffer and are lost
+                if (parked) {
+                    journal.executed(ids[i], j + 1, true);
+                }
+            }
+        }
+    }
+
+    private String read(String file) throws IOException {
+        return Files.readString(mediaFolder.resolve(file), StandardCharsets.UTF_8);
+    }
+
+    private List<String> listProcessFolder() throws IOException {
+        try (Stream<Path> files = Files.list(mediaFolder.getParent())) {
+            return files.map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private List<String> list() throws IOException {
+        try (Stream<Path> files = Files.list(mediaFolder)) {
+            return files.filter(Files::isRegularFile).map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * the parts of the StorageProvider that the journal needs, working on the local file system
+     */
+    private static StorageProviderInterface localStorage() {
+        return (StorageProviderInterface) Proxy.newProxyInstance(RenameJournalTest.class.getClassLoader(),
+                new Class<?>[] { StorageProviderInterface.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "isFileExists":
+                            return Files.exists((Path) args[0]);
+                        case "isDirectory":
+                            return Files.isDirectory((Path) args[0]);
+                        case "createDirectories":
+                            Files.createDirectories((Path) args[0]);
+                            return null;
+                        case "move":
+                            Files.move((Path) args[0], (Path) args[1], StandardCopyOption.REPLACE_EXISTING);
+                            return null;
+                        case "listFiles":
+                            try (Stream<Path> files = Files.list(Path.of((String) args[0]))) {
+                                return files.collect(Collectors.toList());
+                            }
+                        case "deleteDir":
+                            Files.delete((Path) args[0]);
+                            return true;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
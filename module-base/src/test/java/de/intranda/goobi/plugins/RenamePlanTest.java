@@ -0,0 +1,84 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class RenamePlanTest {
+
+    private static final String TEMP = "temp";
+
+    @Test
+    public void testUnchangedNames() throws IOException {
+        RenamePlan plan = RenamePlan.create(List.of("a.tif", "b.tif"), name -> name, TEMP);
+        assertTrue(plan.isEmpty());
+        assertEquals(0, plan.getFilesRenamed());
+    }
+
+    @Test
+    public void testChainIsExecutedBackwards() throws IOException {
+        // page inserted at the front: every file moves one position up
+        Map<String, String> names = new HashMap<>();
+        names.put("p_1.tif", "p_2.tif");
+        names.put("p_2.tif", "p_3.tif");
+        names.put("p_3.tif", "p_4.tif");
+        names.put("new.tif", "p_1.tif");
+        RenamePlan plan = RenamePlan.create(List.of("new.tif", "p_1.tif", "p_2.tif", "p_3.tif"), n -> names.getOrDefault(n, n), TEMP);
+
+        assertEquals(0, plan.getCycles());
+        assertEquals(4, plan.getFilesRenamed());
+        assertEquals(1, plan.getChains().size());
+        List<RenamePlan.Move> chain = plan.getChains().get(0);
+        assertEquals(new RenamePlan.Move("p_3.tif", "p_4.tif"), chain.get(0));
+        assertEquals(new RenamePlan.Move("new.tif", "p_1.tif"), chain.get(3));
+        assertValid(List.of("new.tif", "p_1.tif", "p_2.tif", "p_3.tif"), plan);
+    }
+
+    @Test
+    public void testCycleUsesOneTemporaryName() throws IOException {
+        Map<String, String> names = new HashMap<>();
+        names.put("a.tif", "b.tif");
+        names.put("b.tif", "c.tif");
+        names.put("c.tif", "a.tif");
+        RenamePlan plan = RenamePlan.create(List.of("a.tif", "b.tif", "c.tif"), n -> names.getOrDefault(n, n), TEMP);
+
+        assertEquals(1, plan.getCycles());
+        assertEquals(3, plan.getFilesRenamed());
+        assertEquals(4, plan.getChains().get(0).size());
+        assertValid(List.of("a.tif", "b.tif", "c.tif"), plan);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTargetOccupiedByUnrenamedFile() throws IOException {
+        RenamePlan.create(List.of("a.tif", "b.tif"), n -> "a.tif".equals(n) ? "b.tif" : n, TEMP);
+    }
+
+    @Test(expected = IOException.class)
+    public void testDuplicateTargets() throws IOException {
+        RenamePlan.create(List.of("a.tif", "b.tif"), n -> "c.tif", TEMP);
+    }
+
+    /**
+     * replay the plan on a set of names and make sure that no move overwrites an existing file
+     */
+    private static void assertValid(List<String> fileNames, RenamePlan plan) {
+        Set<String> present = new HashSet<>(fileNames);
+        for (List<RenamePlan.Move> chain : plan.getChains()) {
+            for (RenamePlan.Move move : chain) {
+                assertTrue(present.remove(move.source()));
+                assertTrue(present.add(move.target()));
+            }
+        }
+        for (String name : present) {
+            assertTrue(!name.startsWith(TEMP));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.sub.goobi.helper.NIOFileUtils;
+import de.sub.goobi.helper.StorageProviderInterface;
+
+/**
+ * Renaming of all folders of a process on the file system with the preflight, the rename journal and the PlanExecutor of the plugin, as done by
+ * renameFiles() for a local process. Every invocation inserts a page at the front, so that all files collide with their successors, and the next
+ * invocation removes it again. Run with -p files=100000 for large processes and point java.io.tmpdir to the storage that should be measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 6)
+@Fork(1)
+public class FolderRenameBenchmark {
+
+    @Param({ "1000", "10000" })
+    private int files;
+
+    @Param({ "5", "10" })
+    private int folders;
+
+    private SyntheticProcess process;
+    private NamesMap forward;
+    private NamesMap backward;
+    private boolean shifted;
+    private StorageProviderInterface storageProvider;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        process = SyntheticProcess.create(files, folders);
+        forward = process.shiftedNames();
+        backward = process.unshiftedNames();
+        storageProvider = new NIOFileUtils();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        process.delete();
+    }
+
+    @Benchmark
+    public int renameAllFolders() throws IOException {
+        NamesMap namesMap = shifted ? backward : forward;
+        shifted = !shifted;
+        Preflight preflight = new Preflight(namesMap, PlanExecutor.TEMP_FOLDER);
+        for (Path folder : process.getFolders()) {
+            preflight.checkFolder(folder.toString(), FolderSnapshot.read(folder, PlanExecutor.TEMP_FOLDER));
+        }
+        if (!preflight.isValid()) {
+            throw new IOException(String.join("; ", preflight.getErrors()));
+        }
+        int renamed = 0;
+        try (RenameJournal journal = new RenameJournal(process.getRoot().resolve(RenameJournal.FILE_NAME))) {
+            journal.begin(namesMap, preflight.getFolders(), PlanExecutor.TEMP_FOLDER, false);
+            PlanExecutor executor = new PlanExecutor(storageProvider, journal, new RenameStatistics(), new RenameProgress());
+            for (String folder : preflight.getFolders()) {
+                Preflight.FolderCheck check = preflight.getFolder(folder);
+                executor.execute(folder, check.snapshot(), check.plan(), check.snapshot().getFolder().getFileName().toString());
+                renamed += check.plan().getFilesRenamed();
+            }
+            journal.delete();
+        }
+        return renamed;
+    }
+}
@@ -0,0 +1,78 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Update of the file locations in meta.xml with the streaming rewrite of updateMetsFile(). The UGH based update needs a running Goobi
+ * configuration and a ruleset and is therefore not covered here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MetsUpdateBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    private int files;
+
+    private SyntheticProcess process;
+    private NamesMap forward;
+    private NamesMap backward;
+    private boolean shifted;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // the files themselves are not needed, but the media folder is part of the locations
+        process = SyntheticProcess.create(files, 1);
+        forward = process.shiftedNames();
+        backward = process.unshiftedNames();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        process.delete();
+    }
+
+    @Benchmark
+    public int updateMetsFileStreaming() throws IOException {
+        NamesMap namesMap = shifted ? backward : forward;
+        shifted = !shifted;
+        return new MetsLocationRewriter().rewrite(process.getMetsFile(), namesMap::getNewLocation);
+    }
+}
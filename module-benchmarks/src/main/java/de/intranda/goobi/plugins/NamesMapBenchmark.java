@@ -0,0 +1,91 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Listing of the media folder and creation of the names map, as done by createNamesMap() of the plugin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NamesMapBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    private int files;
+
+    private SyntheticProcess process;
+    private NamesMap namesMap;
+    private NamingTemplate namingTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        process = SyntheticProcess.create(files, 1);
+        namesMap = process.shiftedNames();
+        // the default template of the plugin, compiled once like in initialize()
+        namingTemplate = NamingTemplate.compile("{titletail}_{counter}", 6, literal -> literal.replace("{titletail}", "title"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        process.delete();
+    }
+
+    @Benchmark
+    public NamesMap createNamesMap() throws IOException {
+        FolderSnapshot snapshot = FolderSnapshot.read(process.getFolders().get(0), PlanExecutor.TEMP_FOLDER);
+        if (!namingTemplate.fits(snapshot.getFileNames().size())) {
+            throw new IllegalStateException("The naming template does not have enough digits for " + files + " files");
+        }
+        return NamesMap.create(snapshot.getFileNames(), namingTemplate).withFolderSuffixes(Map.of());
+    }
+
+    /**
+     * rendering of every new name, as done when all folders and METS entries are renamed
+     */
+    @Benchmark
+    public long renderNewNames() {
+        long length = 0;
+        for (String stem : process.getStems()) {
+            length += namesMap.getNewFileName(stem + ".tif").length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,84 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Planning of a collision heavy re-numbering in memory: every file takes the name of its successor, and in the second case pairs of files swap
+ * their names, which are cycles that need the temp folder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RenamePlanBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    private int files;
+
+    private List<String> fileNames;
+    private NamesMap shifted;
+    private NamesMap swapped;
+
+    @Setup
+    public void setUp() {
+        fileNames = new ArrayList<>(files);
+        Map<String, String> shiftedMap = new HashMap<>();
+        Map<String, String> swappedMap = new HashMap<>();
+        for (int i = 0; i < files; ++i) {
+            String stem = String.format("scan_%07d", i + 1);
+            fileNames.add(stem + ".tif");
+            shiftedMap.put(stem, String.format("scan_%07d", i + 2));
+            swappedMap.put(stem, String.format("scan_%07d", i % 2 == 0 ? i + 2 : i));
+        }
+        shifted = NamesMap.of(shiftedMap);
+        swapped = NamesMap.of(swappedMap);
+    }
+
+    @Benchmark
+    public RenamePlan planShiftedNames() throws IOException {
+        return RenamePlan.create(fileNames, shifted::getNewFileName, PlanExecutor.TEMP_FOLDER);
+    }
+
+    @Benchmark
+    public RenamePlan planSwappedNames() throws IOException {
+        return RenamePlan.create(fileNames, swapped::getNewFileName, PlanExecutor.TEMP_FOLDER);
+    }
+}
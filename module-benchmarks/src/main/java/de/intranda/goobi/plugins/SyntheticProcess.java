@@ -0,0 +1,146 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import lombok.Getter;
+
+/**
+ * A generated process directory for the benchmarks: a media folder and further folders with the same file stems, like the ocr folders, plus a
+ * meta.xml that references every page of the media folder.
+ */
+public class SyntheticProcess {
+
+    private static final String[] SUFFIXES = { ".tif", ".xml", ".pdf", ".txt", ".jpg", ".html", ".json", ".png", ".jp2", ".hocr" };
+
+    // names of the generated files, rendered by the same template code as the new names of the plugin
+    public static final NamingTemplate NAMING_TEMPLATE = NamingTemplate.compile("scan_{counter}", 7, UnaryOperator.identity());
+
+    @Getter
+    private final Path root;
+    @Getter
+    private final Path metsFile;
+    @Getter
+    private final List<Path> folders = new ArrayList<>();
+    // stems of the files in listing order
+    @Getter
+    private final List<String> stems = new ArrayList<>();
+
+    private SyntheticProcess(Path root) {
+        this.root = root;
+        this.metsFile = root.resolve("meta.xml");
+    }
+
+    /**
+     * generate a process directory
+     *
+     * @param files number of files per folder
+     * @param folderCount number of folders, at most 10
+     * @return the generated process
+     * @throws IOException
+     */
+    public static SyntheticProcess create(int files, int folderCount) throws IOException {
+        SyntheticProcess process = new SyntheticProcess(Files.createTempDirectory("rename-benchmark"));
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < files; ++i) {
+            name.setLength(0);
+            NAMING_TEMPLATE.render(i + 1, name);
+            process.stems.add(name.toString());
+        }
+        for (int f = 0; f < Math.min(folderCount, SUFFIXES.length); ++f) {
+            Path folder = Files.createDirectories(process.root.resolve("folder_" + f));
+            for (String stem : process.stems) {
+                Files.createFile(folder.resolve(stem + SUFFIXES[f]));
+            }
+            process.folders.add(folder);
+        }
+        process.writeMetsFile();
+        return process;
+    }
+
+    /**
+     * @return mapping from the stems of the generated files to new names, all shifted by one position as if a page was inserted at the front
+     */
+    public NamesMap shiftedNames() {
+        List<String> fileNames = new ArrayList<>(stems.size());
+        int[] numbers = new int[stems.size()];
+        for (int i = 0; i < numbers.length; ++i) {
+            fileNames.add(stems.get(i) + SUFFIXES[0]);
+            numbers[i] = i + 2;
+        }
+        return NamesMap.create(fileNames, numbers, NAMING_TEMPLATE);
+    }
+
+    /**
+     * @return the inverse of {@link #shiftedNames()}, to get back to the generated state
+     */
+    public NamesMap unshiftedNames() {
+        return shiftedNames().inverse();
+    }
+
+    public void delete() throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void writeMetsFile() throws IOException {
+        String mediaFolder = folders.get(0).toUri().toString();
+        try (BufferedWriter writer = Files.newBufferedWriter(metsFile, StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<mets:mets xmlns:mets=\"http://www.loc.gov/METS/\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">\n");
+            writer.write("   <mets:fileSec>\n      <mets:fileGrp USE=\"LOCAL\">\n");
+            for (int i = 0; i < stems.size(); ++i) {
+                writer.write(String.format("         <mets:file ID=\"FILE_%07d\" MIMETYPE=\"image/tiff\">%n", i + 1));
+                writer.write(String.format("            <mets:FLocat LOCTYPE=\"URL\" xlink:href=\"%s%s.tif\"/>%n", mediaFolder, stems.get(i)));
+                writer.write("         </mets:file>\n");
+            }
+            writer.write("      </mets:fileGrp>\n   </mets:fileSec>\n");
+            writer.write("   <mets:structMap TYPE=\"PHYSICAL\">\n      <mets:div ID=\"PHYS_0000\" TYPE=\"BoundBook\">\n");
+            for (int i = 0; i < stems.size(); ++i) {
+                writer.write(String.format("         <mets:div ID=\"PHYS_%07d\" ORDER=\"%d\" TYPE=\"page\">%n", i + 1, i + 1));
+                writer.write(String.format("            <mets:fptr FILEID=\"FILE_%07d\"/>%n", i + 1));
+                writer.write("         </mets:div>\n");
+            }
+            writer.write("      </mets:div>\n   </mets:structMap>\n</mets:mets>\n");
+        }
+    }
+}